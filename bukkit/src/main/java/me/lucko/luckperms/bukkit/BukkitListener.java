@@ -249,6 +249,26 @@ public class BukkitListener implements Listener {
         if (e.getPlugin().getName().equalsIgnoreCase("Vault")) {
             plugin.tryVaultHook(true);
         }
+
+        // the plugin may have registered new permissions with children
+        plugin.getChildPermissionProvider().scheduleUpdate(plugin.getScheduler(), () -> {
+            for (User user : plugin.getUserManager().getAll().values()) {
+                UserCache userCache = user.getUserData();
+                if (userCache != null) {
+                    userCache.invalidateCache();
+                }
+            }
+
+            // attachments cache their resolved children too
+            plugin.doSync(() -> {
+                for (Player player : plugin.getServer().getOnlinePlayers()) {
+                    LPPermissible permissible = Injector.getPermissible(player.getUniqueId());
+                    if (permissible != null) {
+                        permissible.refreshAttachments();
+                    }
+                }
+            });
+        });
     }
 
     @EventHandler
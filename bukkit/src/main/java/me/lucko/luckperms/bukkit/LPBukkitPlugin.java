@@ -36,7 +36,9 @@ import me.lucko.luckperms.bukkit.model.ChildPermissionProvider;
 import me.lucko.luckperms.bukkit.model.DefaultsProvider;
 import me.lucko.luckperms.bukkit.model.Injector;
 import me.lucko.luckperms.bukkit.model.LPPermissible;
+import me.lucko.luckperms.bukkit.model.SubscriptionQueue;
 import me.lucko.luckperms.bukkit.vault.VaultHook;
+import me.lucko.luckperms.bukkit.vault.VaultScheduler;
 import me.lucko.luckperms.common.api.ApiHandler;
 import me.lucko.luckperms.common.api.ApiProvider;
 import me.lucko.luckperms.common.caching.UserCache;
@@ -48,6 +50,7 @@ import me.lucko.luckperms.common.config.LuckPermsConfiguration;
 import me.lucko.luckperms.common.constants.Permission;
 import me.lucko.luckperms.common.contexts.ContextManager;
 import me.lucko.luckperms.common.contexts.StaticCalculator;
+import me.lucko.luckperms.common.core.ExpiryIndex;
 import me.lucko.luckperms.common.core.UuidCache;
 import me.lucko.luckperms.common.core.model.User;
 import me.lucko.luckperms.common.dependencies.Dependency;
@@ -120,8 +123,10 @@ public class LPBukkitPlugin extends JavaPlugin implements LuckPermsPlugin {
     private Logger log;
     private DefaultsProvider defaultsProvider;
     private ChildPermissionProvider childPermissionProvider;
+    private SubscriptionQueue subscriptionQueue;
     private LocaleManager localeManager;
     private CachedStateManager cachedStateManager;
+    private ExpiryIndex expiryIndex;
     private ContextManager<Player> contextManager;
     private WorldCalculator worldCalculator;
     private CalculatorFactory calculatorFactory;
@@ -159,8 +164,9 @@ public class LPBukkitPlugin extends JavaPlugin implements LuckPermsPlugin {
         DependencyManager.loadDependencies(this, storageTypes);
 
         // setup the Bukkit defaults hook
-        defaultsProvider = new DefaultsProvider();
+        defaultsProvider = new DefaultsProvider(scheduler.getSyncExecutor());
         childPermissionProvider = new ChildPermissionProvider();
+        subscriptionQueue = new SubscriptionQueue(this);
 
         // give all plugins a chance to load their permissions, then refresh.
         scheduler.doSyncLater(() -> {
@@ -269,6 +275,7 @@ public class LPBukkitPlugin extends JavaPlugin implements LuckPermsPlugin {
         trackManager = new GenericTrackManager(this);
         calculatorFactory = new BukkitCalculatorFactory(this);
         cachedStateManager = new CachedStateManager(this);
+        expiryIndex = new ExpiryIndex();
 
         contextManager = new ContextManager<>();
         worldCalculator = new WorldCalculator(this);
@@ -397,8 +404,10 @@ public class LPBukkitPlugin extends JavaPlugin implements LuckPermsPlugin {
         log = null;
         defaultsProvider = null;
         childPermissionProvider = null;
+        subscriptionQueue = null;
         localeManager = null;
         cachedStateManager = null;
+        expiryIndex = null;
         contextManager = null;
         worldCalculator = null;
         calculatorFactory = null;
@@ -619,6 +628,11 @@ public class LPBukkitPlugin extends JavaPlugin implements LuckPermsPlugin {
         LinkedHashMap<String, Object> map = new LinkedHashMap<>();
         map.put("Vault Enabled", vaultHook != null);
         map.put("Vault Server", configuration.get(ConfigKeys.VAULT_SERVER));
+        if (vaultHook != null && vaultHook.getPermissionHook() != null) {
+            VaultScheduler vaultScheduler = vaultHook.getPermissionHook().getScheduler();
+            map.put("Vault Pending Writes", vaultScheduler.getPendingWrites() + " (" + vaultScheduler.getPendingHolders() + " holders)");
+            map.put("Vault Writes / Saves", vaultScheduler.getTotalWrites() + " / " + vaultScheduler.getTotalSaves() + " (" + vaultScheduler.getCoalescedWrites() + " coalesced)");
+        }
         map.put("Bukkit Defaults count", defaultsProvider.size());
         map.put("Bukkit Child Permissions count", childPermissionProvider.getPermissions().size());
         map.put("Vault Including Global", configuration.get(ConfigKeys.VAULT_INCLUDING_GLOBAL));
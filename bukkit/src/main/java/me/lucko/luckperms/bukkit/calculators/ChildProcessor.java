@@ -24,17 +24,20 @@ package me.lucko.luckperms.bukkit.calculators;
 
 import lombok.RequiredArgsConstructor;
 
+import com.google.common.collect.ImmutableMap;
+
 import me.lucko.luckperms.api.Tristate;
 import me.lucko.luckperms.bukkit.model.ChildPermissionProvider;
 import me.lucko.luckperms.common.calculators.PermissionProcessor;
 
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
 
 @RequiredArgsConstructor
 public class ChildProcessor implements PermissionProcessor {
     private final ChildPermissionProvider provider;
-    private Map<String, Boolean> childPermissions = new ConcurrentHashMap<>();
+
+    // built in full by the provider and then swapped in, so readers never see a partial map
+    private volatile Map<String, Boolean> childPermissions = ImmutableMap.of();
 
     @Override
     public Tristate hasPermission(String permission) {
@@ -44,12 +47,6 @@ public class ChildProcessor implements PermissionProcessor {
 
     @Override
     public void updateBacking(Map<String, Boolean> map) {
-        childPermissions.clear();
-        for (Map.Entry<String, Boolean> e : map.entrySet()) {
-            Map<String, Boolean> children = provider.getPermissions().get(e);
-            if (children != null) {
-                childPermissions.putAll(children);
-            }
-        }
+        childPermissions = provider.getChildren(map);
     }
 }
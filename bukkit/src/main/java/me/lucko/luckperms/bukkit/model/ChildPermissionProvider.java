@@ -24,59 +24,262 @@ package me.lucko.luckperms.bukkit.model;
 
 import lombok.Getter;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Maps;
 
+import me.lucko.luckperms.common.plugin.LuckPermsScheduler;
+
 import org.bukkit.Bukkit;
 import org.bukkit.permissions.Permission;
 
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class ChildPermissionProvider {
+    private static final Comparator<Map.Entry<String, Boolean>> PARENT_ORDER = Map.Entry.<String, Boolean>comparingByKey().thenComparing(Map.Entry.comparingByValue());
 
     @Getter
-    private ImmutableMap<Map.Entry<String, Boolean>, ImmutableMap<String, Boolean>> permissions = ImmutableMap.of();
+    private volatile ImmutableMap<Map.Entry<String, Boolean>, ImmutableMap<String, Boolean>> permissions = ImmutableMap.of();
+
+    // merged children for a set of parent permissions, shared between every calculator with the same set.
+    // replaced whenever the permissions change - always read before the permissions themselves
+    private volatile Cache<List<Map.Entry<String, Boolean>>, ImmutableMap<String, Boolean>> mergedChildren = newMergedCache();
+
+    // the direct children of every registered permission, as of the last update
+    private Map<String, Map<String, Boolean>> registered = ImmutableMap.of();
+
+    // resolved child closures, shared between the true & false passes, and kept between updates
+    private final Map<Map.Entry<String, Boolean>, ImmutableMap<String, Boolean>> closures = new HashMap<>();
 
+    private final AtomicBoolean updateScheduled = new AtomicBoolean(false);
+
+    // snapshots are taken in order on the server thread, but may be applied out of order
+    private final AtomicLong snapshotCounter = new AtomicLong(0);
+    private long appliedSnapshot = -1;
+
+    /**
+     * Resolves the child permissions of every registered permission. Must be called on the server thread.
+     */
     public void setup() {
-        ImmutableMap.Builder<Map.Entry<String, Boolean>, ImmutableMap<String, Boolean>> permissions = ImmutableMap.builder();
+        update(snapshotCounter.getAndIncrement(), snapshotPermissions());
+    }
 
+    /**
+     * Schedules an update for the next tick, for when plugins may have registered or removed permissions.
+     * The registered permissions are read on the server thread, and then resolved asynchronously.
+     *
+     * @param scheduler the scheduler
+     * @param onChange called if the resolved child permissions changed
+     */
+    public void scheduleUpdate(LuckPermsScheduler scheduler, Runnable onChange) {
+        if (!updateScheduled.compareAndSet(false, true)) {
+            return;
+        }
+
+        scheduler.doSync(() -> {
+            updateScheduled.set(false);
+            long id = snapshotCounter.getAndIncrement();
+            Map<String, Map<String, Boolean>> snapshot = snapshotPermissions();
+            scheduler.doAsync(() -> {
+                if (update(id, snapshot)) {
+                    onChange.run();
+                }
+            });
+        });
+    }
+
+    private static Map<String, Map<String, Boolean>> snapshotPermissions() {
+        Map<String, Map<String, Boolean>> snapshot = new HashMap<>();
         for (Permission permission : Bukkit.getServer().getPluginManager().getPermissions()) {
-            // handle true
-            Map<String, Boolean> trueChildren = new HashMap<>();
-            resolveChildren(trueChildren, Collections.singletonMap(permission.getName(), true), false);
-            trueChildren.remove(permission.getName(), true);
-            if (!trueChildren.isEmpty()) {
-                permissions.put(Maps.immutableEntry(permission.getName().toLowerCase(), true), ImmutableMap.copyOf(trueChildren));
+            Map<String, Boolean> children = new LinkedHashMap<>();
+            for (Map.Entry<String, Boolean> child : permission.getChildren().entrySet()) {
+                children.putIfAbsent(child.getKey().toLowerCase(), child.getValue());
+            }
+            snapshot.put(permission.getName().toLowerCase(), children);
+        }
+        return snapshot;
+    }
+
+    private synchronized boolean update(long id, Map<String, Map<String, Boolean>> snapshot) {
+        if (id < appliedSnapshot) {
+            return false; // a newer snapshot has already been applied
+        }
+        appliedSnapshot = id;
+
+        Map<String, Map<String, Boolean>> previous = this.registered;
+        this.registered = snapshot;
+
+        // find the permissions which were added, removed or had their children changed
+        Set<String> changed = new HashSet<>();
+        for (Map.Entry<String, Map<String, Boolean>> e : snapshot.entrySet()) {
+            if (!Objects.equals(e.getValue(), previous.get(e.getKey()))) {
+                changed.add(e.getKey());
+            }
+        }
+        for (String name : previous.keySet()) {
+            if (!snapshot.containsKey(name)) {
+                changed.add(name);
+            }
+        }
+
+        if (changed.isEmpty()) {
+            return false;
+        }
+
+        // a closure only needs resolving again if it passed through one of the changed permissions
+        closures.values().removeIf(closure -> {
+            for (String name : closure.keySet()) {
+                if (changed.contains(name)) {
+                    return true;
+                }
+            }
+            return false;
+        });
+        Set<Map.Entry<String, Boolean>> unchanged = new HashSet<>(closures.keySet());
+
+        ImmutableMap<Map.Entry<String, Boolean>, ImmutableMap<String, Boolean>> current = this.permissions;
+        ImmutableMap.Builder<Map.Entry<String, Boolean>, ImmutableMap<String, Boolean>> permissions = ImmutableMap.builder();
+
+        for (String name : snapshot.keySet()) {
+            for (boolean value : new boolean[]{true, false}) {
+                Map.Entry<String, Boolean> key = Maps.immutableEntry(name, value);
+
+                // nothing it depends on has changed, so the previous result still stands
+                if (unchanged.contains(key)) {
+                    ImmutableMap<String, Boolean> children = current.get(key);
+                    if (children != null) {
+                        permissions.put(key, children);
+                    }
+                    continue;
+                }
+
+                Map<String, Boolean> children = resolve(name, value, new HashSet<>());
+                if (children == null) {
+                    children = new HashMap<>();
+                    resolveCyclic(children, Collections.singletonMap(name, value), false);
+                } else {
+                    children = new HashMap<>(children);
+                }
+
+                children.remove(name, value);
+                if (!children.isEmpty()) {
+                    permissions.put(key, ImmutableMap.copyOf(children));
+                }
             }
+        }
+
+        ImmutableMap<Map.Entry<String, Boolean>, ImmutableMap<String, Boolean>> updated = permissions.build();
+        if (updated.equals(current)) {
+            return false;
+        }
 
-            // handle false
-            Map<String, Boolean> falseChildren = new HashMap<>();
-            resolveChildren(falseChildren, Collections.singletonMap(permission.getName(), false), false);
-            falseChildren.remove(permission.getName(), false);
-            if (!falseChildren.isEmpty()) {
-                permissions.put(Maps.immutableEntry(permission.getName().toLowerCase(), false), ImmutableMap.copyOf(falseChildren));
+        this.permissions = updated;
+        this.mergedChildren = newMergedCache();
+        return true;
+    }
+
+    /**
+     * Gets the combined children of every permission set in the given backing map.
+     *
+     * @param backing a calculator's permission backing
+     * @return the merged children, possibly shared with other calculators
+     */
+    public ImmutableMap<String, Boolean> getChildren(Map<String, Boolean> backing) {
+        Cache<List<Map.Entry<String, Boolean>>, ImmutableMap<String, Boolean>> mergedChildren = this.mergedChildren;
+        ImmutableMap<Map.Entry<String, Boolean>, ImmutableMap<String, Boolean>> permissions = this.permissions;
+
+        List<Map.Entry<String, Boolean>> parents = new ArrayList<>();
+        for (Map.Entry<String, Boolean> e : backing.entrySet()) {
+            if (permissions.containsKey(e)) {
+                parents.add(Maps.immutableEntry(e.getKey(), e.getValue()));
             }
         }
 
-        this.permissions = permissions.build();
+        if (parents.isEmpty()) {
+            return ImmutableMap.of();
+        }
+
+        parents.sort(PARENT_ORDER);
+        return mergedChildren.get(parents, p -> {
+            Map<String, Boolean> merged = new HashMap<>();
+            for (Map.Entry<String, Boolean> parent : p) {
+                merged.putAll(permissions.get(parent));
+            }
+            return ImmutableMap.copyOf(merged);
+        });
+    }
+
+    private static Cache<List<Map.Entry<String, Boolean>>, ImmutableMap<String, Boolean>> newMergedCache() {
+        return Caffeine.newBuilder().weakValues().build();
     }
 
-    private static void resolveChildren(Map<String, Boolean> accumulator, Map<String, Boolean> children, boolean invert) {
+    /**
+     * Resolves the closure of a permission, reusing the closures already resolved for its children.
+     *
+     * @return the closure, or null if the permission is part of a cycle, in which case the result
+     *         depends on where the walk started and can't be shared
+     */
+    private ImmutableMap<String, Boolean> resolve(String name, boolean value, Set<Map.Entry<String, Boolean>> resolving) {
+        Map.Entry<String, Boolean> key = Maps.immutableEntry(name, value);
+
+        ImmutableMap<String, Boolean> closure = closures.get(key);
+        if (closure != null) {
+            return closure;
+        }
+
+        if (!resolving.add(key)) {
+            return null;
+        }
+
+        Map<String, Boolean> accumulator = new LinkedHashMap<>();
+        accumulator.put(name, value);
+
+        Map<String, Boolean> children = registered.get(name);
+        if (children != null) {
+            for (Map.Entry<String, Boolean> child : children.entrySet()) {
+                ImmutableMap<String, Boolean> childClosure = resolve(child.getKey(), child.getValue() ^ !value, resolving);
+                if (childClosure == null) {
+                    resolving.remove(key);
+                    return null;
+                }
+
+                for (Map.Entry<String, Boolean> e : childClosure.entrySet()) {
+                    accumulator.putIfAbsent(e.getKey(), e.getValue());
+                }
+            }
+        }
+
+        resolving.remove(key);
+
+        closure = ImmutableMap.copyOf(accumulator);
+        closures.put(key, closure);
+        return closure;
+    }
+
+    private void resolveCyclic(Map<String, Boolean> accumulator, Map<String, Boolean> children, boolean invert) {
         for (Map.Entry<String, Boolean> e : children.entrySet()) {
             if (accumulator.containsKey(e.getKey())) {
                 continue; // Prevent infinite loops
             }
 
-            Permission perm = Bukkit.getServer().getPluginManager().getPermission(e.getKey());
             boolean value = e.getValue() ^ invert;
-            String lName = e.getKey().toLowerCase();
-
-            accumulator.put(lName, value);
+            accumulator.put(e.getKey(), value);
 
+            Map<String, Boolean> perm = registered.get(e.getKey());
             if (perm != null) {
-                resolveChildren(accumulator, perm.getChildren(), !value);
+                resolveCyclic(accumulator, perm, !value);
             }
         }
     }
@@ -23,8 +23,10 @@
 package me.lucko.luckperms.bukkit.model;
 
 import lombok.Getter;
+import lombok.RequiredArgsConstructor;
 
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
 
 import me.lucko.luckperms.api.Tristate;
 
@@ -32,40 +34,68 @@ import org.bukkit.Bukkit;
 import org.bukkit.permissions.Permission;
 
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
 
+@RequiredArgsConstructor
 public class DefaultsProvider {
 
+    /**
+     * Bukkit asks for a refresh every time a plugin registers a permission with a default.
+     * These refreshes are deferred to the next tick on this executor, so a plugin registering
+     * thousands of permissions causes one refresh instead of thousands.
+     */
+    private final Executor syncExecutor;
+
     @Getter
-    private Map<String, Boolean> opDefaults = ImmutableMap.of();
-    private final DummyPermissible opDummy = new DummyPermissible(this::refreshOp);
-    
+    private volatile Map<String, Boolean> opDefaults = ImmutableMap.of();
+    private final DummyPermissible opDummy = new DummyPermissible(this::scheduleRefreshOp);
+    private final AtomicBoolean opRefreshScheduled = new AtomicBoolean(false);
+
     @Getter
-    private Map<String, Boolean> nonOpDefaults = ImmutableMap.of();
-    private final DummyPermissible nonOpDummy = new DummyPermissible(this::refreshNonOp);
+    private volatile Map<String, Boolean> nonOpDefaults = ImmutableMap.of();
+    private final DummyPermissible nonOpDummy = new DummyPermissible(this::scheduleRefreshNonOp);
+    private final AtomicBoolean nonOpRefreshScheduled = new AtomicBoolean(false);
 
     public void refresh() {
-        refreshOp();
-        refreshNonOp();
+        // the child resolutions don't depend on op status, so can be shared between both passes
+        Map<Map.Entry<String, Boolean>, Map<String, Boolean>> resolved = new HashMap<>();
+        refreshOp(resolved);
+        refreshNonOp(resolved);
     }
 
-    private void refreshOp() {
-        unregisterDefaults(opDefaults, opDummy);
-
-        Map<String, Boolean> builder = new HashMap<>();
-        calculateDefaults(builder, opDummy, true);
-
-        opDefaults = ImmutableMap.copyOf(builder);
+    private void scheduleRefreshOp() {
+        if (opRefreshScheduled.compareAndSet(false, true)) {
+            syncExecutor.execute(() -> {
+                opRefreshScheduled.set(false);
+                refreshOp(new HashMap<>());
+            });
+        }
     }
 
-    private void refreshNonOp() {
-        unregisterDefaults(nonOpDefaults, nonOpDummy);
+    private void scheduleRefreshNonOp() {
+        if (nonOpRefreshScheduled.compareAndSet(false, true)) {
+            syncExecutor.execute(() -> {
+                nonOpRefreshScheduled.set(false);
+                refreshNonOp(new HashMap<>());
+            });
+        }
+    }
 
-        Map<String, Boolean> builder = new HashMap<>();
-        calculateDefaults(builder, nonOpDummy, false);
+    private void refreshOp(Map<Map.Entry<String, Boolean>, Map<String, Boolean>> resolved) {
+        Map<String, Boolean> defaults = calculateDefaults(resolved, true);
+        updateSubscriptions(opDefaults, defaults, opDummy, true);
+        opDefaults = defaults;
+    }
 
-        nonOpDefaults = ImmutableMap.copyOf(builder);
+    private void refreshNonOp(Map<Map.Entry<String, Boolean>, Map<String, Boolean>> resolved) {
+        Map<String, Boolean> defaults = calculateDefaults(resolved, false);
+        updateSubscriptions(nonOpDefaults, defaults, nonOpDummy, false);
+        nonOpDefaults = defaults;
     }
 
     public void close() {
@@ -95,31 +125,62 @@ public class DefaultsProvider {
         Bukkit.getServer().getPluginManager().unsubscribeFromDefaultPerms(true, p);
     }
 
-    private static void calculateDefaults(Map<String, Boolean> map, DummyPermissible p, boolean op) {
-        Set<Permission> defaults = Bukkit.getServer().getPluginManager().getDefaultPermissions(op);
+    private static void updateSubscriptions(Map<String, Boolean> previous, Map<String, Boolean> current, DummyPermissible p, boolean op) {
         Bukkit.getServer().getPluginManager().subscribeToDefaultPerms(op, p);
 
+        // only touch the subscriptions which have actually changed
+        for (String name : previous.keySet()) {
+            if (!current.containsKey(name)) {
+                Bukkit.getServer().getPluginManager().unsubscribeFromPermission(name, p);
+            }
+        }
+        for (String name : current.keySet()) {
+            if (!previous.containsKey(name)) {
+                Bukkit.getServer().getPluginManager().subscribeToPermission(name, p);
+            }
+        }
+    }
+
+    private static Map<String, Boolean> calculateDefaults(Map<Map.Entry<String, Boolean>, Map<String, Boolean>> resolved, boolean op) {
+        Map<String, Boolean> map = new HashMap<>();
+
+        Set<Permission> defaults = Bukkit.getServer().getPluginManager().getDefaultPermissions(op);
         for (Permission perm : defaults) {
-            String name = perm.getName().toLowerCase();
-            map.put(name, true);
-            Bukkit.getServer().getPluginManager().subscribeToPermission(name, p);
-            calculateChildPermissions(map, p, perm.getChildren(), false);
+            map.putAll(resolve(resolved, new HashSet<>(), perm.getName().toLowerCase(), true));
         }
+
+        return ImmutableMap.copyOf(map);
     }
 
-    private static void calculateChildPermissions(Map<String, Boolean> map, DummyPermissible p, Map<String, Boolean> children, boolean invert) {
-        for (Map.Entry<String, Boolean> e : children.entrySet()) {
-            Permission perm = Bukkit.getServer().getPluginManager().getPermission(e.getKey());
-            boolean value = e.getValue() ^ invert;
-            String lName = e.getKey().toLowerCase();
+    /**
+     * Resolves the permission and all of its children, in the order they would be applied. Later
+     * entries override earlier ones, so only the last value for each permission is kept.
+     */
+    private static Map<String, Boolean> resolve(Map<Map.Entry<String, Boolean>, Map<String, Boolean>> resolved, Set<Map.Entry<String, Boolean>> resolving, String name, boolean value) {
+        Map.Entry<String, Boolean> key = Maps.immutableEntry(name, value);
+
+        Map<String, Boolean> ret = resolved.get(key);
+        if (ret != null) {
+            return ret;
+        }
+
+        if (!resolving.add(key)) {
+            return ImmutableMap.of(); // Prevent infinite loops
+        }
 
-            map.put(lName, value);
-            Bukkit.getServer().getPluginManager().subscribeToPermission(e.getKey(), p);
+        ret = new LinkedHashMap<>();
+        ret.put(name, value);
 
-            if (perm != null) {
-                calculateChildPermissions(map, p, perm.getChildren(), !value);
+        Permission perm = Bukkit.getServer().getPluginManager().getPermission(name);
+        if (perm != null) {
+            for (Map.Entry<String, Boolean> e : perm.getChildren().entrySet()) {
+                ret.putAll(resolve(resolved, resolving, e.getKey().toLowerCase(), e.getValue() ^ !value));
             }
         }
+
+        resolving.remove(key);
+        resolved.put(key, ret);
+        return ret;
     }
 
 }
@@ -22,10 +22,14 @@
 
 package me.lucko.luckperms.bukkit.model;
 
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.NonNull;
 import lombok.Setter;
 
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+
 import me.lucko.luckperms.api.Contexts;
 import me.lucko.luckperms.api.Tristate;
 import me.lucko.luckperms.bukkit.LPBukkitPlugin;
@@ -42,16 +46,18 @@ import org.bukkit.permissions.PermissionAttachmentInfo;
 import org.bukkit.permissions.PermissionRemovedExecutor;
 import org.bukkit.plugin.Plugin;
 
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
-import java.util.stream.Collectors;
 
 /**
  * Modified PermissibleBase for LuckPerms
@@ -70,9 +76,20 @@ public class LPPermissible extends PermissibleBase {
     private final AtomicBoolean active = new AtomicBoolean(false);
 
     // Attachment stuff.
-    private final Map<String, PermissionAttachmentInfo> attachmentPermissions = new ConcurrentHashMap<>();
+    // An immutable snapshot, replaced each time the attachments are recalculated
+    private volatile Map<String, PermissionAttachmentInfo> attachmentPermissions = ImmutableMap.of();
     private final List<PermissionAttachment> attachments = Collections.synchronizedList(new LinkedList<>());
 
+    // The resolved permissions of each attachment, reused until the attachment's own permissions change
+    @Getter(AccessLevel.NONE)
+    private final Map<PermissionAttachment, AttachmentClosure> attachmentClosures = new IdentityHashMap<>();
+    @Getter(AccessLevel.NONE)
+    private final AtomicInteger attachmentVersion = new AtomicInteger(0);
+
+    // The last result of #getEffectivePermissions, rebuilt only when the backing permission cache or attachments change.
+    @Getter(AccessLevel.NONE)
+    private volatile EffectivePermissions effectivePermissionsCache = null;
+
     public LPPermissible(@NonNull Player parent, User user, LPBukkitPlugin plugin) {
         super(parent);
         this.user = user;
@@ -101,15 +118,12 @@ public class LPPermissible extends PermissibleBase {
             return;
         }
 
-        Set<String> ent = new HashSet<>(cache.getPermissionData(calculateContexts()).getImmutableBacking().keySet());
+        Map<String, Boolean> permissions = cache.getPermissionData(calculateContexts()).getImmutableBacking();
+        Map<String, Boolean> defaults = parent.isOp() ?
+                plugin.getDefaultsProvider().getOpDefaults() :
+                plugin.getDefaultsProvider().getNonOpDefaults();
 
-        if (parent.isOp()) {
-            ent.addAll(plugin.getDefaultsProvider().getOpDefaults().keySet());
-        } else {
-            ent.addAll(plugin.getDefaultsProvider().getNonOpDefaults().keySet());
-        }
-
-        subscriptions.subscribe(ent);
+        subscriptions.subscribe(permissions, defaults);
     }
 
     public void unsubscribeFromAllAsync() {
@@ -117,7 +131,7 @@ public class LPPermissible extends PermissibleBase {
     }
 
     public void unsubscribeFromAll() {
-        subscriptions.subscribe(Collections.emptySet());
+        subscriptions.unsubscribeFromAll();
     }
 
     public void addAttachments(List<PermissionAttachment> attachments) {
@@ -181,18 +195,21 @@ public class LPPermissible extends PermissibleBase {
 
     @Override
     public Set<PermissionAttachmentInfo> getEffectivePermissions() {
-        Set<PermissionAttachmentInfo> perms = new HashSet<>();
-        perms.addAll(attachmentPermissions.values());
+        Map<String, Boolean> backing = hasData() ?
+                user.getUserData().getPermissionData(calculateContexts()).getImmutableBacking() :
+                ImmutableMap.of();
 
-        if (hasData()) {
-            perms.addAll(
-                    user.getUserData().getPermissionData(calculateContexts()).getImmutableBacking().entrySet().stream()
-                            .map(e -> new PermissionAttachmentInfo(parent, e.getKey(), null, e.getValue()))
-                            .collect(Collectors.toList())
-            );
+        // read the version before the attachment permissions, so a concurrent recalculation forces another rebuild
+        int attachmentVersion = this.attachmentVersion.get();
+
+        EffectivePermissions current = effectivePermissionsCache;
+        if (current != null && current.backing == backing && current.attachmentVersion == attachmentVersion) {
+            return current.permissions;
         }
 
-        return perms;
+        EffectivePermissions rebuilt = new EffectivePermissions(backing, attachmentVersion, current);
+        effectivePermissionsCache = rebuilt;
+        return rebuilt.permissions;
     }
 
     @Override
@@ -275,19 +292,74 @@ public class LPPermissible extends PermissibleBase {
     }
 
     public void recalculatePermissions(boolean invalidate) {
+        // called by the PermissibleBase constructor, before our fields are initialised
         if (attachmentPermissions == null) {
             return;
         }
 
-        attachmentPermissions.clear();
+        Map<String, PermissionAttachmentInfo> previous;
+        Map<String, PermissionAttachmentInfo> updated;
 
-        for (PermissionAttachment attachment : attachments) {
-            calculateChildPermissions(attachment.getPermissions(), false, attachment);
+        synchronized (attachmentClosures) {
+            List<PermissionAttachment> attachments;
+            synchronized (this.attachments) {
+                attachments = new ArrayList<>(this.attachments);
+            }
+
+            Map<PermissionAttachment, AttachmentClosure> closures = new IdentityHashMap<>();
+            Map<String, PermissionAttachmentInfo> merged = new HashMap<>();
+
+            for (PermissionAttachment attachment : attachments) {
+                Map<String, Boolean> source = attachment.getPermissions();
+
+                AttachmentClosure closure = attachmentClosures.get(attachment);
+                if (closure == null || !closure.source.equals(source)) {
+                    closure = new AttachmentClosure(attachment, source);
+                }
+
+                closures.put(attachment, closure);
+                merged.putAll(closure.permissions);
+            }
+
+            attachmentClosures.clear();
+            attachmentClosures.putAll(closures);
+
+            previous = attachmentPermissions;
+            updated = ImmutableMap.copyOf(merged);
+            attachmentPermissions = updated;
         }
+        attachmentVersion.incrementAndGet();
+
+        Set<String> changed = new HashSet<>();
+        for (Map.Entry<String, PermissionAttachmentInfo> e : updated.entrySet()) {
+            PermissionAttachmentInfo before = previous.get(e.getKey());
+            if (before == null) {
+                Bukkit.getServer().getPluginManager().subscribeToPermission(e.getKey(), parent);
+                changed.add(e.getKey());
+            } else if (before.getValue() != e.getValue().getValue()) {
+                changed.add(e.getKey());
+            }
+        }
+        for (String name : previous.keySet()) {
+            if (!updated.containsKey(name)) {
+                changed.add(name);
+            }
+        }
+
+        // only the lookups for nodes provided by attachments can be affected
+        if (hasData() && invalidate && !changed.isEmpty()) {
+            user.getUserData().invalidatePermissionCalculators(changed);
+        }
+    }
 
-        if (hasData() && invalidate) {
-            user.getUserData().invalidatePermissionCalculators();
+    /**
+     * Drops the cached attachment resolutions, for when the child permissions registered with the server change.
+     */
+    public void refreshAttachments() {
+        synchronized (attachmentClosures) {
+            attachmentClosures.clear();
         }
+        recalculatePermissions();
     }
 
     @Override
@@ -301,21 +373,69 @@ public class LPPermissible extends PermissibleBase {
         // Bukkit.getServer().getPluginManager().unsubscribeFromDefaultPerms(false, parent);
         // Bukkit.getServer().getPluginManager().unsubscribeFromDefaultPerms(true, parent);
 
-        attachmentPermissions.clear();
+        synchronized (attachmentClosures) {
+            attachmentClosures.clear();
+            attachmentPermissions = ImmutableMap.of();
+        }
+        attachmentVersion.incrementAndGet();
     }
 
-    private void calculateChildPermissions(Map<String, Boolean> children, boolean invert, PermissionAttachment attachment) {
-        for (Map.Entry<String, Boolean> e : children.entrySet()) {
-            Permission perm = Bukkit.getServer().getPluginManager().getPermission(e.getKey());
-            boolean value = e.getValue() ^ invert;
-            String name = e.getKey().toLowerCase();
+    /**
+     * The permissions granted by a single attachment, including the children of each node.
+     */
+    private final class AttachmentClosure {
+        private final Map<String, Boolean> source;
+        private final Map<String, PermissionAttachmentInfo> permissions = new HashMap<>();
 
-            attachmentPermissions.put(name, new PermissionAttachmentInfo(parent, name, attachment, value));
-            Bukkit.getServer().getPluginManager().subscribeToPermission(name, parent);
+        private AttachmentClosure(PermissionAttachment attachment, Map<String, Boolean> source) {
+            this.source = source;
+            calculateChildPermissions(source, false, attachment);
+        }
+
+        private void calculateChildPermissions(Map<String, Boolean> children, boolean invert, PermissionAttachment attachment) {
+            for (Map.Entry<String, Boolean> e : children.entrySet()) {
+                Permission perm = Bukkit.getServer().getPluginManager().getPermission(e.getKey());
+                boolean value = e.getValue() ^ invert;
+                String name = e.getKey().toLowerCase();
+
+                permissions.put(name, new PermissionAttachmentInfo(parent, name, attachment, value));
+
+                if (perm != null) {
+                    calculateChildPermissions(perm.getChildren(), !value, attachment);
+                }
+            }
+        }
+    }
 
-            if (perm != null) {
-                calculateChildPermissions(perm.getChildren(), !value, attachment);
+    /**
+     * An immutable snapshot of the effective permissions for a given permission cache backing.
+     */
+    private final class EffectivePermissions {
+        private final Map<String, Boolean> backing;
+        private final int attachmentVersion;
+        private final Map<String, PermissionAttachmentInfo> backingInfo;
+        private final Set<PermissionAttachmentInfo> permissions;
+
+        private EffectivePermissions(Map<String, Boolean> backing, int attachmentVersion, EffectivePermissions previous) {
+            this.backing = backing;
+            this.attachmentVersion = attachmentVersion;
+
+            // reuse the info instances from the previous snapshot where the value hasn't changed
+            Map<String, PermissionAttachmentInfo> previousInfo = previous == null ? ImmutableMap.of() : previous.backingInfo;
+            ImmutableMap.Builder<String, PermissionAttachmentInfo> info = ImmutableMap.builder();
+            for (Map.Entry<String, Boolean> e : backing.entrySet()) {
+                PermissionAttachmentInfo existing = previousInfo.get(e.getKey());
+                if (existing == null || existing.getValue() != e.getValue()) {
+                    existing = new PermissionAttachmentInfo(parent, e.getKey(), null, e.getValue());
+                }
+                info.put(e.getKey(), existing);
             }
+            this.backingInfo = info.build();
+
+            this.permissions = ImmutableSet.<PermissionAttachmentInfo>builder()
+                    .addAll(attachmentPermissions.values())
+                    .addAll(backingInfo.values())
+                    .build();
         }
     }
 }
@@ -24,10 +24,11 @@ package me.lucko.luckperms.bukkit.model;
 
 import lombok.RequiredArgsConstructor;
 
-import com.google.common.collect.ImmutableSet;
-import com.google.common.collect.Maps;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Sets;
 
 import org.bukkit.permissions.Permission;
+import org.bukkit.plugin.PluginManager;
 
 import java.util.HashSet;
 import java.util.Map;
@@ -40,52 +41,81 @@ import java.util.Set;
  * of checking directly with {@link org.bukkit.permissions.Permissible#hasPermission(Permission)}.
  *
  * {@link org.bukkit.Bukkit#broadcast(String, String)} is a good example of this.
+ *
+ * Changes are calculated async, and then queued with the {@link SubscriptionQueue} to be applied on the main thread.
  */
 @RequiredArgsConstructor
 public class SubscriptionManager {
 
     private final LPPermissible permissible;
-    private Set<String> currentSubscriptions = ImmutableSet.of();
-
-    public synchronized void subscribe(Set<String> perms) {
-        Set<String> newPerms = ImmutableSet.copyOf(perms);
-
-        // we compare changes to avoid unnecessary time wasted on the main thread mutating this data.
-        // the changes can be calculated here async, and then only the needed changes can be applied.
-        Map.Entry<Set<String>, Set<String>> changes = compareSets(newPerms, currentSubscriptions);
 
-        Set<String> toAdd = changes.getKey();
-        Set<String> toRemove = changes.getValue();
-
-        permissible.getPlugin().doSync(() -> {
-            for (String s : toAdd) {
-                permissible.getPlugin().getServer().getPluginManager().subscribeToPermission(s, permissible.getParent());
+    // the maps the current subscriptions were calculated from. both are immutable snapshots which are replaced when
+    // they change, so comparing by identity is enough to know whether anything needs to be recalculated.
+    private Map<String, Boolean> currentPermissions = ImmutableMap.of();
+    private Map<String, Boolean> currentDefaults = ImmutableMap.of();
+
+    // changes which have been calculated, but not yet applied on the main thread
+    private Set<String> pendingAdd = new HashSet<>();
+    private Set<String> pendingRemove = new HashSet<>();
+    private boolean queued = false;
+
+    public synchronized void subscribe(Map<String, Boolean> permissions, Map<String, Boolean> defaults) {
+        if (permissions == currentPermissions && defaults == currentDefaults) {
+            return;
+        }
+
+        Set<String> current = Sets.union(currentPermissions.keySet(), currentDefaults.keySet());
+        Set<String> updated = Sets.union(permissions.keySet(), defaults.keySet());
+
+        // merge the changes with anything still waiting to be applied. a node which is added and then removed again
+        // before the queue is drained cancels out, and never reaches the main thread.
+        for (String s : Sets.difference(updated, current)) {
+            if (!pendingRemove.remove(s)) {
+                pendingAdd.add(s);
             }
-            for (String s : toRemove) {
-                permissible.getPlugin().getServer().getPluginManager().unsubscribeFromPermission(s, permissible.getParent());
+        }
+        for (String s : Sets.difference(current, updated)) {
+            if (!pendingAdd.remove(s)) {
+                pendingRemove.add(s);
             }
-        });
+        }
+
+        currentPermissions = permissions;
+        currentDefaults = defaults;
 
-        this.currentSubscriptions = newPerms;
+        if (!queued && (!pendingAdd.isEmpty() || !pendingRemove.isEmpty())) {
+            queued = true;
+            permissible.getPlugin().getSubscriptionQueue().enqueue(this);
+        }
+    }
+
+    public void unsubscribeFromAll() {
+        subscribe(ImmutableMap.of(), ImmutableMap.of());
     }
 
     /**
-     * Compares two sets
-     * @param local the local set
-     * @param remote the remote set
-     * @return the entries to add to remote, and the entries to remove from remote
+     * Applies the pending changes to the plugin manager. Must be called on the main thread.
+     *
+     * @param pluginManager the plugin manager
      */
-    private static Map.Entry<Set<String>, Set<String>> compareSets(Set<String> local, Set<String> remote) {
-        // entries in local but not remote need to be added
-        // entries in remote but not local need to be removed
-
-        Set<String> toAdd = new HashSet<>(local);
-        toAdd.removeAll(remote);
-
-        Set<String> toRemove = new HashSet<>(remote);
-        toRemove.removeAll(local);
-
-        return Maps.immutableEntry(toAdd, toRemove);
+    void applyPending(PluginManager pluginManager) {
+        Set<String> toAdd;
+        Set<String> toRemove;
+
+        synchronized (this) {
+            toAdd = pendingAdd;
+            toRemove = pendingRemove;
+            pendingAdd = new HashSet<>();
+            pendingRemove = new HashSet<>();
+            queued = false;
+        }
+
+        for (String s : toAdd) {
+            pluginManager.subscribeToPermission(s, permissible.getParent());
+        }
+        for (String s : toRemove) {
+            pluginManager.unsubscribeFromPermission(s, permissible.getParent());
+        }
     }
 
 }
@@ -0,0 +1,83 @@
+/*
+ * Copyright (c) 2016 Lucko (Luck) <luck@lucko.me>
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.luckperms.bukkit.model;
+
+import lombok.RequiredArgsConstructor;
+
+import me.lucko.luckperms.bukkit.LPBukkitPlugin;
+
+import org.bukkit.plugin.PluginManager;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Collects pending subscription changes from all {@link SubscriptionManager}s, and applies them in a single
+ * batch on the main thread.
+ *
+ * A change to a group can affect hundreds of online users at once. Rather than scheduling a task for each of them,
+ * the changes are drained by one task per tick, which stops once its time budget is used up and carries anything
+ * left over to the next tick.
+ */
+@RequiredArgsConstructor
+public class SubscriptionQueue {
+    private static final long TIME_BUDGET = TimeUnit.MILLISECONDS.toNanos(5);
+
+    private final LPBukkitPlugin plugin;
+    private final Queue<SubscriptionManager> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean scheduled = new AtomicBoolean(false);
+
+    void enqueue(SubscriptionManager manager) {
+        queue.add(manager);
+        schedule();
+    }
+
+    private void schedule() {
+        if (scheduled.compareAndSet(false, true)) {
+            plugin.doSync(this::drain);
+        }
+    }
+
+    private void drain() {
+        scheduled.set(false);
+
+        PluginManager pluginManager = plugin.getServer().getPluginManager();
+        long deadline = System.nanoTime() + TIME_BUDGET;
+
+        SubscriptionManager manager;
+        while ((manager = queue.poll()) != null) {
+            manager.applyPending(pluginManager);
+
+            if (System.nanoTime() - deadline > 0) {
+                break;
+            }
+        }
+
+        if (!queue.isEmpty()) {
+            schedule();
+        }
+    }
+
+}
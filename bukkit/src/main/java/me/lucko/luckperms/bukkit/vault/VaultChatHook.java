@@ -70,7 +70,7 @@ public class VaultChatHook extends Chat {
 
         perms.log("Setting meta: '" + node + "' for " + holder.getObjectName() + " on world " + world + ", server " + perms.getServer());
 
-        perms.getScheduler().execute(() -> {
+        perms.getScheduler().execute(holder, () -> {
             holder.removeIf(n -> n.isMeta() && n.getMeta().getKey().equals(node));
 
             Node.Builder metaNode = NodeFactory.makeMetaNode(node, value).setValue(true);
@@ -82,7 +82,7 @@ public class VaultChatHook extends Chat {
             }
 
             holder.setPermission(metaNode.build());
-            perms.save(holder);
+            return true;
         });
     }
 
@@ -93,7 +93,7 @@ public class VaultChatHook extends Chat {
 
         perms.log("Setting " + (prefix ? "prefix" : "suffix") + " for " + holder.getObjectName() + " on world " + world + ", server " + perms.getServer());
 
-        perms.getScheduler().execute(() -> {
+        perms.getScheduler().execute(holder, () -> {
 
             // remove all prefixes/suffixes directly set on the user/group
             holder.removeIf(n -> prefix ? n.isPrefix() : n.isSuffix());
@@ -112,7 +112,7 @@ public class VaultChatHook extends Chat {
             }
 
             holder.setPermission(chatMetaNode.build());
-            perms.save(holder);
+            return true;
         });
     }
 
@@ -63,7 +63,7 @@ public class VaultHook {
         final ServicesManager sm = plugin.getServer().getServicesManager();
         if (permissionHook != null) {
             sm.unregister(Permission.class, permissionHook);
-            permissionHook.getScheduler().cancelTask();
+            permissionHook.getScheduler().shutdown();
             permissionHook = null;
         }
         if (chatHook != null) {
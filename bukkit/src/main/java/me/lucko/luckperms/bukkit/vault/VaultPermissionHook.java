@@ -45,7 +45,6 @@ import net.milkbowl.vault.permission.Permission;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.CompletableFuture;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
@@ -64,7 +63,7 @@ public class VaultPermissionHook extends Permission {
 
     public VaultPermissionHook(LPBukkitPlugin plugin) {
         this.plugin = plugin;
-        this.scheduler = new VaultScheduler(plugin);
+        this.scheduler = new VaultScheduler(this);
         super.plugin = plugin;
     }
 
@@ -91,8 +90,8 @@ public class VaultPermissionHook extends Permission {
      * @param holder     the holder to add the permission to
      * @param permission the permission to add
      */
-    private CompletableFuture<Void> add(String world, PermissionHolder holder, String permission) {
-        return CompletableFuture.runAsync(() -> {
+    private void add(String world, PermissionHolder holder, String permission) {
+        scheduler.execute(holder, () -> {
             DataMutateResult result;
             if (world != null && !world.equals("") && !world.equalsIgnoreCase("global")) {
                 result = holder.setPermission(NodeFactory.make(permission, true, getServer(), world));
@@ -100,10 +99,8 @@ public class VaultPermissionHook extends Permission {
                 result = holder.setPermission(NodeFactory.make(permission, true, getServer()));
             }
 
-            if (result.asBoolean()) {
-                save(holder);
-            }
-        }, scheduler);
+            return result.asBoolean();
+        });
     }
 
     /**
@@ -113,8 +110,8 @@ public class VaultPermissionHook extends Permission {
      * @param holder     the holder to remove the permission from
      * @param permission the permission to remove
      */
-    private CompletableFuture<Void> remove(String world, PermissionHolder holder, String permission) {
-        return CompletableFuture.runAsync(() -> {
+    private void remove(String world, PermissionHolder holder, String permission) {
+        scheduler.execute(holder, () -> {
             DataMutateResult result;
             if (world != null && !world.equals("") && !world.equalsIgnoreCase("global")) {
                 result = holder.unsetPermission(NodeFactory.make(permission, getServer(), world));
@@ -122,10 +119,8 @@ public class VaultPermissionHook extends Permission {
                 result = holder.unsetPermission(NodeFactory.make(permission, getServer()));
             }
 
-            if (result.asBoolean()) {
-                save(holder);
-            }
-        }, scheduler);
+            return result.asBoolean();
+        });
     }
 
     /**
@@ -259,7 +254,7 @@ public class VaultPermissionHook extends Permission {
         if (group == null) return false;
 
         String w = world;
-        scheduler.execute(() -> {
+        scheduler.execute(user, () -> {
             DataMutateResult result;
             if (w != null && !w.equals("") && !w.equalsIgnoreCase("global")) {
                 result = user.setInheritGroup(group, ImmutableContextSet.of("server", getServer(), "world", w));
@@ -267,9 +262,7 @@ public class VaultPermissionHook extends Permission {
                 result = user.setInheritGroup(group, ImmutableContextSet.singleton("server", getServer()));
             }
 
-            if (result.asBoolean()) {
-                save(user);
-            }
+            return result.asBoolean();
         });
         return true;
     }
@@ -286,7 +279,7 @@ public class VaultPermissionHook extends Permission {
         if (group == null) return false;
 
         String w = world;
-        scheduler.execute(() -> {
+        scheduler.execute(user, () -> {
             DataMutateResult result;
             if (w != null && !w.equals("") && !w.equalsIgnoreCase("global")) {
                 result = user.unsetInheritGroup(group, ImmutableContextSet.of("server", getServer(), "world", w));
@@ -294,9 +287,7 @@ public class VaultPermissionHook extends Permission {
                 result = user.unsetInheritGroup(group, ImmutableContextSet.singleton("server", getServer()));
             }
 
-            if (result.asBoolean()) {
-                save(user);
-            }
+            return result.asBoolean();
         });
         return true;
     }
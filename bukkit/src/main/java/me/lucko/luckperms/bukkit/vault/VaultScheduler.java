@@ -22,53 +22,216 @@
 
 package me.lucko.luckperms.bukkit.vault;
 
-import me.lucko.luckperms.bukkit.LPBukkitPlugin;
+import me.lucko.luckperms.common.core.model.PermissionHolder;
 
-import org.bukkit.scheduler.BukkitTask;
-
-import java.util.ArrayList;
-import java.util.List;
-import java.util.concurrent.Executor;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BooleanSupplier;
 
 /**
- * Sequential executor for Vault modifications
+ * Write pipeline for Vault modifications
+ *
+ * <p>Writes are queued per holder. Only one worker drains a given holder's queue at a time, so
+ * modifications to the same holder are applied in the order they were submitted, whilst
+ * different holders are flushed in parallel. All writes drained in one pass are followed by a
+ * single save of the holder.</p>
+ *
+ * <p>No task runs whilst the pipeline is idle - workers are only woken when a write is queued.</p>
  */
-public class VaultScheduler implements Runnable, Executor {
+public class VaultScheduler {
+    private static final int MAX_WORKERS = 4;
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 10;
+
+    private final VaultPermissionHook hook;
+    private final ExecutorService executor;
+
+    /**
+     * The queues of holders with writes either pending or being flushed.
+     * Entries are only ever created and removed within a compute block, which makes queuing and retiring atomic.
+     */
+    private final Map<PermissionHolder, HolderQueue> queues = new ConcurrentHashMap<>();
 
-    private BukkitTask task = null;
-    private final List<Runnable> tasks = new ArrayList<>();
+    private final AtomicInteger pendingWrites = new AtomicInteger(0);
+    private final LongAdder totalWrites = new LongAdder();
+    private final LongAdder totalSaves = new LongAdder();
+    private final LongAdder coalescedWrites = new LongAdder();
 
-    public VaultScheduler(LPBukkitPlugin plugin) {
-        task = plugin.getServer().getScheduler().runTaskTimerAsynchronously(plugin, this, 1L, 1L);
+    public VaultScheduler(VaultPermissionHook hook) {
+        this.hook = hook;
+
+        AtomicInteger threadId = new AtomicInteger(0);
+        int workers = Math.max(1, Math.min(MAX_WORKERS, Runtime.getRuntime().availableProcessors()));
+        this.executor = Executors.newFixedThreadPool(workers, r -> {
+            Thread thread = new Thread(r, "luckperms-vault-" + threadId.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
     }
 
-    @Override
-    public void execute(Runnable r) {
-        synchronized (tasks) {
-            tasks.add(r);
+    /**
+     * Queues a modification to a holder.
+     *
+     * @param holder the holder being modified
+     * @param write  the modification, returning true if the holder was changed and should be saved
+     */
+    public void execute(PermissionHolder holder, BooleanSupplier write) {
+        totalWrites.increment();
+
+        // the pipeline has been shut down - just apply the write on the calling thread
+        if (executor.isShutdown()) {
+            executeNow(holder, write);
+            return;
+        }
+
+        pendingWrites.incrementAndGet();
+
+        AtomicBoolean rejected = new AtomicBoolean(false);
+        queues.compute(holder, (h, queue) -> {
+            if (queue == null) {
+                queue = new HolderQueue(h);
+                try {
+                    executor.execute(queue);
+                } catch (RejectedExecutionException e) {
+                    // shut down since the check above
+                    rejected.set(true);
+                    return null;
+                }
+            }
+            queue.writes.add(write);
+            return queue;
+        });
+
+        if (rejected.get()) {
+            pendingWrites.decrementAndGet();
+            executeNow(holder, write);
         }
     }
 
-    @Override
-    public void run() {
-        List<Runnable> toRun;
-        synchronized (tasks) {
-            if (tasks.isEmpty()) {
-                return;
+    private void executeNow(PermissionHolder holder, BooleanSupplier write) {
+        try {
+            if (write.getAsBoolean()) {
+                totalSaves.increment();
+                hook.save(holder);
             }
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Gets the number of writes which have been queued, but not yet applied
+     *
+     * @return the number of pending writes
+     */
+    public int getPendingWrites() {
+        return pendingWrites.get();
+    }
+
+    /**
+     * Gets the number of holders with writes waiting to be flushed
+     *
+     * @return the number of pending holders
+     */
+    public int getPendingHolders() {
+        return queues.size();
+    }
+
+    /**
+     * Gets the number of writes which were merged into another write's save
+     *
+     * @return the number of coalesced writes
+     */
+    public long getCoalescedWrites() {
+        return coalescedWrites.sum();
+    }
+
+    /**
+     * Gets the total number of writes submitted to the pipeline
+     *
+     * @return the number of writes
+     */
+    public long getTotalWrites() {
+        return totalWrites.sum();
+    }
 
-            toRun = new ArrayList<>();
-            toRun.addAll(tasks);
-            tasks.clear();
+    /**
+     * Gets the number of holder saves performed by the pipeline
+     *
+     * @return the number of saves
+     */
+    public long getTotalSaves() {
+        return totalSaves.sum();
+    }
+
+    /**
+     * Stops accepting new work, and waits for pending writes to be flushed.
+     *
+     * <p>Writes submitted after this point are applied on the calling thread.</p>
+     */
+    public void shutdown() {
+        executor.shutdown();
+
+        boolean terminated = false;
+        try {
+            terminated = executor.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         }
 
-        toRun.forEach(Runnable::run);
+        if (!terminated) {
+            executor.shutdownNow();
+
+            int writes = pendingWrites.get();
+            if (writes != 0) {
+                hook.getPlugin().getLog().severe("Gave up waiting for Vault writes to be flushed. " + writes + " writes to " +
+                        queues.size() + " holders were dropped.");
+            }
+        }
     }
 
-    public void cancelTask() {
-        if (task != null) {
-            task.cancel();
-            task = null;
+    private final class HolderQueue implements Runnable {
+        private final PermissionHolder holder;
+        private final Queue<BooleanSupplier> writes = new ConcurrentLinkedQueue<>();
+
+        private HolderQueue(PermissionHolder holder) {
+            this.holder = holder;
+        }
+
+        @Override
+        public void run() {
+            do {
+                int changes = 0;
+
+                BooleanSupplier write;
+                while ((write = writes.poll()) != null) {
+                    try {
+                        if (write.getAsBoolean()) {
+                            changes++;
+                        }
+                    } catch (Exception e) {
+                        e.printStackTrace();
+                    } finally {
+                        pendingWrites.decrementAndGet();
+                    }
+                }
+
+                if (changes != 0) {
+                    totalSaves.increment();
+                    coalescedWrites.add(changes - 1);
+                    hook.save(holder);
+                }
+
+                // only retire this queue if nothing was added whilst we were flushing
+            } while (queues.compute(holder, (h, queue) -> queue.writes.isEmpty() ? null : queue) != null);
         }
     }
 }
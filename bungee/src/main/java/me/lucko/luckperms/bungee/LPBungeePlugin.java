@@ -39,6 +39,7 @@ import me.lucko.luckperms.common.config.ConfigKeys;
 import me.lucko.luckperms.common.config.LuckPermsConfiguration;
 import me.lucko.luckperms.common.contexts.ContextManager;
 import me.lucko.luckperms.common.contexts.StaticCalculator;
+import me.lucko.luckperms.common.core.ExpiryIndex;
 import me.lucko.luckperms.common.core.UuidCache;
 import me.lucko.luckperms.common.core.model.User;
 import me.lucko.luckperms.common.dependencies.Dependency;
@@ -99,6 +100,7 @@ public class LPBungeePlugin extends Plugin implements LuckPermsPlugin {
     private Logger log;
     private LocaleManager localeManager;
     private CachedStateManager cachedStateManager;
+    private ExpiryIndex expiryIndex;
     private ContextManager<ProxiedPlayer> contextManager;
     private CalculatorFactory calculatorFactory;
     private BufferedRequest<Void> updateTaskBuffer;
@@ -213,6 +215,7 @@ public class LPBungeePlugin extends Plugin implements LuckPermsPlugin {
         trackManager = new GenericTrackManager(this);
         calculatorFactory = new BungeeCalculatorFactory(this);
         cachedStateManager = new CachedStateManager(this);
+        expiryIndex = new ExpiryIndex();
 
         contextManager = new ContextManager<>();
         BackendServerCalculator serverCalculator = new BackendServerCalculator();
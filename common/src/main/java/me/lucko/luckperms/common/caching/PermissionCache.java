@@ -34,10 +34,11 @@ import me.lucko.luckperms.common.calculators.PermissionCalculator;
 import me.lucko.luckperms.common.core.model.User;
 
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 
 /**
- * Holds a user's cached permissions for a given context
+ * Holds a user or group's cached permissions for a given context
  */
 public class PermissionCache implements PermissionData {
 
@@ -46,6 +47,11 @@ public class PermissionCache implements PermissionData {
      */
     private final Map<String, Boolean> permissions;
 
+    /**
+     * An immutable snapshot of {@link #permissions}, replaced whenever the permissions change.
+     */
+    private volatile Map<String, Boolean> immutableBacking = ImmutableMap.of();
+
     /**
      * The calculator instance responsible for resolving the raw permission strings in the permission map.
      * This calculator will attempt to resolve all regex/wildcard permissions, as well as account for
@@ -54,8 +60,12 @@ public class PermissionCache implements PermissionData {
     private final PermissionCalculator calculator;
 
     public PermissionCache(Contexts contexts, User user, CalculatorFactory calculatorFactory) {
-        permissions = new ConcurrentHashMap<>();
-        calculator = calculatorFactory.build(contexts, user);
+        this(calculatorFactory.build(contexts, user));
+    }
+
+    public PermissionCache(PermissionCalculator calculator) {
+        this.permissions = new ConcurrentHashMap<>();
+        this.calculator = calculator;
         calculator.updateBacking(permissions); // Initial setup.
     }
 
@@ -64,9 +74,19 @@ public class PermissionCache implements PermissionData {
         calculator.invalidateCache();
     }
 
+    /**
+     * Invalidates the cached lookups for the given permissions only
+     *
+     * @param permissions the permissions to invalidate, in lowercase
+     */
+    public void invalidateCache(Set<String> permissions) {
+        calculator.invalidateCache(permissions);
+    }
+
     public void setPermissions(Map<String, Boolean> permissions) {
         this.permissions.clear();
         this.permissions.putAll(permissions);
+        this.immutableBacking = ImmutableMap.copyOf(permissions);
         calculator.updateBacking(this.permissions);
         invalidateCache();
     }
@@ -79,7 +99,7 @@ public class PermissionCache implements PermissionData {
 
     @Override
     public Map<String, Boolean> getImmutableBacking() {
-        return ImmutableMap.copyOf(permissions);
+        return immutableBacking;
     }
 
     @Override
@@ -155,6 +155,10 @@ public class UserCache implements UserData {
         permission.asMap().values().forEach(PermissionData::invalidateCache);
     }
 
+    public void invalidatePermissionCalculators(Set<String> permissions) {
+        permission.asMap().values().forEach(c -> c.invalidateCache(permissions));
+    }
+
     public void cleanup() {
         permission.cleanUp();
         meta.cleanUp();
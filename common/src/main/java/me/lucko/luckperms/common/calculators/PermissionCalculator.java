@@ -32,6 +32,7 @@ import me.lucko.luckperms.common.plugin.LuckPermsPlugin;
 
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * Calculates and caches permissions
@@ -48,6 +49,10 @@ public class PermissionCalculator {
         cache.invalidateAll();
     }
 
+    public void invalidateCache(Set<String> permissions) {
+        cache.invalidateAll(permissions);
+    }
+
     public Tristate getPermissionValue(String permission) {
         permission = permission.toLowerCase();
         Tristate t = cache.get(permission);
@@ -22,45 +22,151 @@
 
 package me.lucko.luckperms.common.calculators.processors;
 
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Maps;
+
 import me.lucko.luckperms.api.Tristate;
 import me.lucko.luckperms.common.calculators.PermissionProcessor;
 import me.lucko.luckperms.common.constants.Patterns;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
 
+/**
+ * Resolves permissions against the holders regex (<code>r=</code>) permissions.
+ *
+ * <p>All of the regex permissions are compiled into a single pattern when the backing is updated. Patterns which
+ * resolve to the same value are grouped into one capturing alternative, so a lookup needs only one matcher, and
+ * the group which matched decides the result.</p>
+ */
 public class RegexProcessor implements PermissionProcessor {
-    private Map<String, Boolean> regexPermissions = new ConcurrentHashMap<>();
+
+    // backreferences are numbered relative to their own pattern, and would break if patterns were combined
+    private static final Pattern BACKREFERENCE = Pattern.compile("\\\\(?:[1-9]|k<)");
+
+    private volatile CompiledRegex compiled = CompiledRegex.EMPTY;
 
     @Override
     public Tristate hasPermission(String permission) {
-        for (Map.Entry<String, Boolean> e : regexPermissions.entrySet()) {
-            Pattern p = Patterns.compile(e.getKey());
-            if (p == null) {
+        return compiled.lookup(permission);
+    }
+
+    @Override
+    public void updateBacking(Map<String, Boolean> map) {
+        // value --> the patterns resolving to that value
+        Map<Boolean, List<Pattern>> patterns = new LinkedHashMap<>();
+        for (Map.Entry<String, Boolean> e : map.entrySet()) {
+            if (!e.getKey().startsWith("r=") && !e.getKey().startsWith("R=")) {
                 continue;
             }
 
-            if (p.matcher(permission).matches()) {
-                return Tristate.fromBoolean(e.getValue());
+            Pattern p = Patterns.compile(e.getKey().substring(2));
+            if (p == null) {
+                continue;
             }
+
+            patterns.computeIfAbsent(e.getValue(), v -> new ArrayList<>()).add(p);
         }
 
-        return Tristate.UNDEFINED;
+        compiled = CompiledRegex.compile(patterns);
     }
 
-    @Override
-    public void updateBacking(Map<String, Boolean> map) {
-        regexPermissions.clear();
-        for (Map.Entry<String, Boolean> e : map.entrySet()) {
-            if (!e.getKey().startsWith("r=") && !e.getKey().startsWith("R=")) {
-                continue;
+    private static final class CompiledRegex {
+        private static final CompiledRegex EMPTY = new CompiledRegex(null, new int[0], new Tristate[0], ImmutableList.of());
+
+        private static CompiledRegex compile(Map<Boolean, List<Pattern>> patterns) {
+            if (patterns.isEmpty()) {
+                return EMPTY;
+            }
+
+            StringBuilder sb = new StringBuilder();
+            int[] groups = new int[patterns.size()];
+            Tristate[] results = new Tristate[patterns.size()];
+            boolean combinable = true;
+
+            int group = 1;
+            int i = 0;
+            for (Map.Entry<Boolean, List<Pattern>> e : patterns.entrySet()) {
+                if (i != 0) {
+                    sb.append('|');
+                }
+
+                groups[i] = group++;
+                results[i] = Tristate.fromBoolean(e.getKey());
+                i++;
+
+                sb.append('(');
+                boolean first = true;
+                for (Pattern p : e.getValue()) {
+                    if (BACKREFERENCE.matcher(p.pattern()).find()) {
+                        combinable = false;
+                    }
+
+                    if (!first) {
+                        sb.append('|');
+                    }
+                    first = false;
+
+                    sb.append("(?:").append(p.pattern()).append(')');
+                    group += p.matcher("").groupCount();
+                }
+                sb.append(')');
             }
 
-            String pattern = e.getKey().substring(2);
-            Patterns.compile(pattern); // Cache the lookup for later.
+            if (combinable) {
+                try {
+                    return new CompiledRegex(Pattern.compile(sb.toString()), groups, results, ImmutableList.of());
+                } catch (PatternSyntaxException ignored) {
+                    // e.g. the same named group is used in more than one pattern
+                }
+            }
 
-            regexPermissions.put(pattern, e.getValue());
+            // fallback to testing each pattern individually
+            ImmutableList.Builder<Map.Entry<Pattern, Tristate>> fallback = ImmutableList.builder();
+            for (Map.Entry<Boolean, List<Pattern>> e : patterns.entrySet()) {
+                for (Pattern p : e.getValue()) {
+                    fallback.add(Maps.immutableEntry(p, Tristate.fromBoolean(e.getKey())));
+                }
+            }
+            return new CompiledRegex(null, new int[0], new Tristate[0], fallback.build());
+        }
+
+        private final Pattern combined;
+        private final int[] groups;
+        private final Tristate[] results;
+        private final List<Map.Entry<Pattern, Tristate>> fallback;
+
+        private CompiledRegex(Pattern combined, int[] groups, Tristate[] results, List<Map.Entry<Pattern, Tristate>> fallback) {
+            this.combined = combined;
+            this.groups = groups;
+            this.results = results;
+            this.fallback = fallback;
+        }
+
+        private Tristate lookup(String permission) {
+            if (combined != null) {
+                Matcher m = combined.matcher(permission);
+                if (m.matches()) {
+                    for (int i = 0; i < groups.length; i++) {
+                        if (m.start(groups[i]) != -1) {
+                            return results[i];
+                        }
+                    }
+                }
+                return Tristate.UNDEFINED;
+            }
+
+            for (Map.Entry<Pattern, Tristate> e : fallback) {
+                if (e.getKey().matcher(permission).matches()) {
+                    return e.getValue();
+                }
+            }
+            return Tristate.UNDEFINED;
         }
     }
 }
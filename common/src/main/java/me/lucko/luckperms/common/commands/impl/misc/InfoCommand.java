@@ -88,6 +88,14 @@ public class InfoCommand extends SingleCommand {
                 formatBoolean(c.get(ConfigKeys.APPLYING_SHORTHAND))
         );
 
+        Map<String, String> storageInfo = plugin.getStorage().getMeta();
+        if (!storageInfo.isEmpty()) {
+            Message.EMPTY.send(sender, "&f-  &bStorage Info:");
+            for (Map.Entry<String, String> e : storageInfo.entrySet()) {
+                Message.EMPTY.send(sender, "&f-     &3" + e.getKey() + ": " + formatValue(e.getValue()));
+            }
+        }
+
         LinkedHashMap<String, Object> platformInfo = plugin.getExtraInfo();
         if (platformInfo == null || platformInfo.isEmpty()) {
             return CommandResult.SUCCESS;
@@ -152,6 +152,8 @@ public class ConfigKeys {
     public static final ConfigKey<Boolean> VAULT_PRIMARY_GROUP_OVERRIDES_CHECK_EXISTS = BooleanKey.of("vault-primary-groups-overrides.check-group-exists", true);
     public static final ConfigKey<Boolean> VAULT_PRIMARY_GROUP_OVERRIDES_CHECK_MEMBER_OF = BooleanKey.of("vault-primary-groups-overrides.check-user-member-of", true);
     public static final ConfigKey<Boolean> VAULT_DEBUG = BooleanKey.of("vault-debug", false);
+    public static final ConfigKey<Integer> OFFLINE_USERS_IDLE_MINUTES = IntegerKey.of("offline-users.idle-minutes", 10);
+    public static final ConfigKey<Integer> OFFLINE_USERS_NODE_BUDGET = IntegerKey.of("offline-users.node-budget", 50000);
     public static final ConfigKey<Map<String, String>> WORLD_REWRITES = MapKey.of("world-rewrite");
     public static final ConfigKey<Map<String, String>> GROUP_NAME_REWRITES = MapKey.of("group-name-rewrite");
     public static final ConfigKey<List<Rule>> DEFAULT_ASSIGNMENTS = AbstractKey.of(c -> {
@@ -171,7 +173,11 @@ public class ConfigKeys {
                 c.getString("data.database", null),
                 c.getString("data.username", null),
                 c.getString("data.password", null),
-                c.getInt("data.pool-size", 10)
+                c.getInt("data.pool-size", 10),
+                c.getString("data.write-concern", "acknowledged"),
+                c.getInt("data.login-pool-size", 4),
+                c.getInt("data.bulk-pool-size", 2),
+                c.getString("data.read-replica-address", "")
         );
     }));
     public static final ConfigKey<String> SQL_TABLE_PREFIX = EnduringKey.wrap(StringKey.of("data.table_prefix", "luckperms_"));
@@ -0,0 +1,163 @@
+/*
+ * Copyright (c) 2016 Lucko (Luck) <luck@lucko.me>
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.luckperms.common.core;
+
+import me.lucko.luckperms.common.core.model.PermissionHolder;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Indexes permission holders by the time at which their next temporary node expires.
+ *
+ * <p>Holders re-index themselves whenever their nodes change, so the expiry task only needs to
+ * audit holders which actually have a node due.</p>
+ *
+ * <p>Holders are compared by identity, not equality. A holder which has been unloaded and replaced
+ * by a new instance must not share an entry with its replacement.</p>
+ */
+public class ExpiryIndex {
+
+    /**
+     * Marker value meaning a holder has no temporary nodes
+     */
+    public static final long NEVER = Long.MAX_VALUE;
+
+    // Expiry time (unix seconds) --> Holders with a node expiring at that time
+    private final NavigableMap<Long, Set<PermissionHolder>> schedule = new TreeMap<>();
+
+    // Holder --> The time the holder is currently scheduled at
+    private final Map<PermissionHolder, Long> scheduled = new IdentityHashMap<>();
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /**
+     * Updates the time at which a holder's next temporary node expires
+     *
+     * @param holder the holder
+     * @param expiry the expiry time of the holder's next temporary node, or {@link #NEVER}
+     */
+    public void update(PermissionHolder holder, long expiry) {
+        lock.lock();
+        try {
+            Long previous = expiry == NEVER ? scheduled.remove(holder) : scheduled.put(holder, expiry);
+            if (previous != null) {
+                if (previous == expiry) {
+                    return;
+                }
+                unschedule(holder, previous);
+            }
+
+            if (expiry != NEVER) {
+                schedule.computeIfAbsent(expiry, e -> Collections.newSetFromMap(new IdentityHashMap<>())).add(holder);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Removes a holder from the index
+     *
+     * @param holder the holder to remove
+     */
+    public void remove(PermissionHolder holder) {
+        update(holder, NEVER);
+    }
+
+    /**
+     * Removes and returns all holders with a node which has expired at the given time.
+     *
+     * <p>Holders are expected to re-index themselves once their expired nodes have been removed.</p>
+     *
+     * @param now the current unix time in seconds
+     * @return the holders with expired nodes
+     */
+    public Set<PermissionHolder> pollExpired(long now) {
+        lock.lock();
+        try {
+            // matches the behaviour of Node#hasExpired
+            NavigableMap<Long, Set<PermissionHolder>> due = schedule.headMap(now, false);
+            if (due.isEmpty()) {
+                return Collections.emptySet();
+            }
+
+            Set<PermissionHolder> ret = Collections.newSetFromMap(new IdentityHashMap<>());
+            Iterator<Set<PermissionHolder>> it = due.values().iterator();
+            while (it.hasNext()) {
+                for (PermissionHolder holder : it.next()) {
+                    scheduled.remove(holder);
+                    ret.add(holder);
+                }
+                it.remove();
+            }
+            return ret;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Gets the number of holders with temporary nodes in the index
+     *
+     * @return the number of indexed holders
+     */
+    public int size() {
+        lock.lock();
+        try {
+            return scheduled.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Removes all holders from the index
+     */
+    public void clear() {
+        lock.lock();
+        try {
+            schedule.clear();
+            scheduled.clear();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void unschedule(PermissionHolder holder, long expiry) {
+        Set<PermissionHolder> holders = schedule.get(expiry);
+        if (holders != null) {
+            holders.remove(holder);
+            if (holders.isEmpty()) {
+                schedule.remove(expiry);
+            }
+        }
+    }
+
+}
@@ -47,6 +47,7 @@ import me.lucko.luckperms.common.caching.handlers.HolderReference;
 import me.lucko.luckperms.common.config.ConfigKeys;
 import me.lucko.luckperms.common.core.ContextSetComparator;
 import me.lucko.luckperms.common.core.DataMutateResult;
+import me.lucko.luckperms.common.core.ExpiryIndex;
 import me.lucko.luckperms.common.core.InheritanceInfo;
 import me.lucko.luckperms.common.core.NodeComparator;
 import me.lucko.luckperms.common.core.NodeFactory;
@@ -168,6 +169,9 @@ public abstract class PermissionHolder {
 
         // Declare new state to the state manager
         declareState();
+
+        // Re-index the next expiry time
+        plugin.getExpiryIndex().update(this, getNextExpiry());
     }
 
     protected void declareState() {
@@ -178,6 +182,30 @@ public abstract class PermissionHolder {
         }
     }
 
+    /**
+     * Gets the time at which the next of this holders temporary nodes will expire
+     *
+     * @return the expiry time in unix seconds, or {@link ExpiryIndex#NEVER} if the holder has no temporary nodes
+     */
+    private long getNextExpiry() {
+        long next = ExpiryIndex.NEVER;
+        synchronized (transientNodes) {
+            for (Node n : transientNodes.values()) {
+                if (n.isTemporary() && n.getExpiryUnixTime() < next) {
+                    next = n.getExpiryUnixTime();
+                }
+            }
+        }
+        synchronized (nodes) {
+            for (Node n : nodes.values()) {
+                if (n.isTemporary() && n.getExpiryUnixTime() < next) {
+                    next = n.getExpiryUnixTime();
+                }
+            }
+        }
+        return next;
+    }
+
     /**
      * Gets the friendly name of this permission holder (for use in commands, etc)
      *
@@ -249,6 +277,29 @@ public abstract class PermissionHolder {
         invalidateCache();
     }
 
+    /**
+     * Replaces the multimap backing this object with another, without invalidating caches or notifying
+     * state listeners.
+     *
+     * <p>Used when loading many holders at once. Callers must follow up with {@link #invalidateCachedState()}
+     * once every holder in the batch has been replaced.</p>
+     *
+     * @param multimap the replacement multimap
+     */
+    public void replaceNodesQuietly(Multimap<ImmutableContextSet, Node> multimap) {
+        synchronized (nodes) {
+            nodes.clear();
+            nodes.putAll(multimap);
+        }
+    }
+
+    /**
+     * Invalidates caches and notifies state listeners, as if this holders nodes had just changed.
+     */
+    public void invalidateCachedState() {
+        invalidateCache();
+    }
+
     public void setTransientNodes(Set<Node> set) {
         synchronized (transientNodes) {
             transientNodes.clear();
@@ -652,8 +703,6 @@ public abstract class PermissionHolder {
         boolean work = false;
         Set<Node> removed = new HashSet<>();
 
-        ImmutableSet<Node> before = ImmutableSet.copyOf(mergePermissions());
-
         synchronized (nodes) {
             Iterator<Node> it = nodes.values().iterator();
             while (it.hasNext()) {
@@ -691,7 +740,9 @@ public abstract class PermissionHolder {
             return false;
         }
 
+        // only build the before state once we know something has actually expired
         ImmutableSet<Node> after = ImmutableSet.copyOf(mergePermissions());
+        ImmutableSet<Node> before = ImmutableSet.<Node>builder().addAll(after).addAll(removed).build();
 
         for (Node r : removed) {
             plugin.getApiProvider().getEventFactory().handleNodeRemove(r, this, before, after);
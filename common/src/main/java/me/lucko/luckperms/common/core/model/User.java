@@ -115,13 +115,28 @@ public class User extends PermissionHolder implements Identifiable<UserIdentifie
      * Sets up the UserData cache
      * Blocking call.
      */
-    public synchronized void setupData(boolean op) {
+    public void setupData(boolean op) {
+        setupData(op, true);
+    }
+
+    /**
+     * Sets up the UserData cache
+     * Blocking call.
+     *
+     * @param op if the user is op
+     * @param preCalculate if the cache should be filled for the platform's usual contexts up front, rather
+     *                     than as each context is requested. Users who are only looked up occasionally
+     *                     don't need the up front calculation.
+     */
+    public synchronized void setupData(boolean op, boolean preCalculate) {
         if (userData != null) {
             return;
         }
 
         userData = new UserCache(this, getPlugin().getCalculatorFactory());
-        userData.preCalculate(getPlugin().getPreProcessContexts(op));
+        if (preCalculate) {
+            userData.preCalculate(getPlugin().getPreProcessContexts(op));
+        }
 
         getPlugin().getApiProvider().getEventFactory().handleUserCacheLoad(this, userData);
         getPlugin().onUserRefresh(this);
@@ -59,6 +59,7 @@ public class DependencyManager {
     public static final Map<StorageType, List<Dependency>> STORAGE_DEPENDENCIES = ImmutableMap.<StorageType, List<Dependency>>builder()
             .put(StorageType.JSON, ImmutableList.of())
             .put(StorageType.YAML, ImmutableList.of())
+            .put(StorageType.BINARY, ImmutableList.of())
             .put(StorageType.MONGODB, ImmutableList.of(Dependency.MONGODB_DRIVER))
             .put(StorageType.MARIADB, ImmutableList.of(Dependency.MARIADB_DRIVER, Dependency.SLF4J_API, Dependency.SLF4J_SIMPLE, Dependency.HIKARI))
             .put(StorageType.MYSQL, ImmutableList.of(Dependency.MYSQL_DRIVER, Dependency.SLF4J_API, Dependency.SLF4J_SIMPLE, Dependency.HIKARI))
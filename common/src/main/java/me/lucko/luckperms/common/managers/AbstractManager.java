@@ -75,7 +75,10 @@ public abstract class AbstractManager<I, T extends Identifiable<I>> implements M
     @Override
     public void unload(I id) {
         if (id != null) {
-            objects.invalidate(lowerCase(id));
+            T t = objects.asMap().remove(lowerCase(id));
+            if (t != null) {
+                onUnload(t);
+            }
         }
     }
 
@@ -88,9 +91,19 @@ public abstract class AbstractManager<I, T extends Identifiable<I>> implements M
 
     @Override
     public void unloadAll() {
+        objects.asMap().values().forEach(this::onUnload);
         objects.invalidateAll();
     }
 
+    /**
+     * Called after an object has been removed from this manager
+     *
+     * @param t the object which was unloaded
+     */
+    protected void onUnload(T t) {
+
+    }
+
     @SuppressWarnings("unchecked")
     private static <I> I lowerCase(I i) {
         if (i instanceof String) {
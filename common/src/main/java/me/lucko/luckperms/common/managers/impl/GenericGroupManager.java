@@ -38,4 +38,9 @@ public class GenericGroupManager extends AbstractManager<String, Group> implemen
         return new Group(name, plugin);
     }
 
+    @Override
+    protected void onUnload(Group group) {
+        plugin.getExpiryIndex().remove(group);
+    }
+
 }
\ No newline at end of file
@@ -107,6 +107,11 @@ public class GenericUserManager extends AbstractManager<UserIdentifier, User> im
                 new User(id.getUuid(), id.getUsername(), plugin);
     }
 
+    @Override
+    protected void onUnload(User user) {
+        plugin.getExpiryIndex().remove(user);
+    }
+
     @Override
     public User getByUsername(String name) {
         for (User user : getAll().values()) {
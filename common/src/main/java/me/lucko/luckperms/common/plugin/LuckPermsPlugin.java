@@ -35,6 +35,7 @@ import me.lucko.luckperms.common.commands.utils.Util;
 import me.lucko.luckperms.common.config.LuckPermsConfiguration;
 import me.lucko.luckperms.common.constants.Message;
 import me.lucko.luckperms.common.contexts.ContextManager;
+import me.lucko.luckperms.common.core.ExpiryIndex;
 import me.lucko.luckperms.common.core.UuidCache;
 import me.lucko.luckperms.common.core.model.User;
 import me.lucko.luckperms.common.locale.LocaleManager;
@@ -156,6 +157,13 @@ public interface LuckPermsPlugin {
      */
     CachedStateManager getCachedStateManager();
 
+    /**
+     * Gets the index of holders with temporary nodes.
+     *
+     * @return the expiry index
+     */
+    ExpiryIndex getExpiryIndex();
+
     /**
      * Gets the class responsible for constructing PermissionCalculators on this platform.
      *
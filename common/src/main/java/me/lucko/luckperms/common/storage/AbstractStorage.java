@@ -41,7 +41,9 @@ import me.lucko.luckperms.common.storage.backing.AbstractBacking;
 import me.lucko.luckperms.common.storage.wrappings.BufferedOutputStorage;
 import me.lucko.luckperms.common.storage.wrappings.TolerantStorage;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
@@ -107,6 +109,11 @@ public class AbstractStorage implements Storage {
         return makeFuture(() -> backing.saveUser(user));
     }
 
+    @Override
+    public CompletableFuture<Set<User>> saveUsers(Collection<User> users) {
+        return makeFuture(() -> backing.saveUsers(users));
+    }
+
     @Override
     public CompletableFuture<Boolean> cleanupUsers() {
         return makeFuture(backing::cleanupUsers);
@@ -160,6 +167,11 @@ public class AbstractStorage implements Storage {
         return makeFuture(() -> backing.saveGroup(group));
     }
 
+    @Override
+    public CompletableFuture<Set<Group>> saveGroups(Collection<Group> groups) {
+        return makeFuture(() -> backing.saveGroups(groups));
+    }
+
     @Override
     public CompletableFuture<Boolean> deleteGroup(Group group, DeletionCause cause) {
         return makeFuture(() -> {
@@ -242,6 +254,7 @@ public class AbstractStorage implements Storage {
 
     private interface Delegated {
         String getName();
+        Map<String, String> getMeta();
         boolean isAcceptingLogins();
         void setAcceptingLogins(boolean b);
         void init();
@@ -34,5 +34,9 @@ public class DatastoreConfiguration implements me.lucko.luckperms.api.data.Datas
     private final String username;
     private final String password;
     private int poolSize;
+    private final String writeConcern;
+    private final int loginPoolSize;
+    private final int bulkPoolSize;
+    private final String readReplicaAddress;
 
 }
@@ -33,6 +33,8 @@ import me.lucko.luckperms.common.data.Log;
 import me.lucko.luckperms.common.plugin.LuckPermsPlugin;
 import me.lucko.luckperms.common.storage.backing.AbstractBacking;
 
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -66,6 +68,13 @@ public class SplitBacking extends AbstractBacking {
         backing.values().forEach(AbstractBacking::shutdown);
     }
 
+    @Override
+    public Map<String, String> getMeta() {
+        Map<String, String> meta = new LinkedHashMap<>();
+        backing.values().forEach(ds -> meta.putAll(ds.getMeta()));
+        return meta;
+    }
+
     @Override
     public boolean logAction(LogEntry entry) {
         return backing.get(types.get("log")).logAction(entry);
@@ -86,6 +95,11 @@ public class SplitBacking extends AbstractBacking {
         return backing.get(types.get("user")).saveUser(user);
     }
 
+    @Override
+    public Set<User> saveUsers(Collection<User> users) {
+        return backing.get(types.get("user")).saveUsers(users);
+    }
+
     @Override
     public boolean cleanupUsers() {
         return backing.get(types.get("user")).cleanupUsers();
@@ -121,6 +135,11 @@ public class SplitBacking extends AbstractBacking {
         return backing.get(types.get("group")).saveGroup(group);
     }
 
+    @Override
+    public Set<Group> saveGroups(Collection<Group> groups) {
+        return backing.get(types.get("group")).saveGroups(groups);
+    }
+
     @Override
     public boolean deleteGroup(Group group) {
         return backing.get(types.get("group")).deleteGroup(group);
@@ -32,7 +32,9 @@ import me.lucko.luckperms.common.core.model.Track;
 import me.lucko.luckperms.common.core.model.User;
 import me.lucko.luckperms.common.data.Log;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
@@ -46,6 +48,8 @@ public interface Storage {
 
     String getName();
 
+    Map<String, String> getMeta();
+
     boolean isAcceptingLogins();
 
     void setAcceptingLogins(boolean acceptingLogins);
@@ -64,6 +68,14 @@ public interface Storage {
 
     CompletableFuture<Boolean> saveUser(User user);
 
+    /**
+     * Saves a batch of users.
+     *
+     * @param users the users to save
+     * @return the users which could not be saved
+     */
+    CompletableFuture<Set<User>> saveUsers(Collection<User> users);
+
     CompletableFuture<Boolean> cleanupUsers();
 
     CompletableFuture<Set<UUID>> getUniqueUsers();
@@ -78,6 +90,14 @@ public interface Storage {
 
     CompletableFuture<Boolean> saveGroup(Group group);
 
+    /**
+     * Saves a batch of groups.
+     *
+     * @param groups the groups to save
+     * @return the groups which could not be saved
+     */
+    CompletableFuture<Set<Group>> saveGroups(Collection<Group> groups);
+
     CompletableFuture<Boolean> deleteGroup(Group group, DeletionCause cause);
 
     CompletableFuture<List<HeldPermission<String>>> getGroupsWithPermission(String permission);
@@ -29,6 +29,7 @@ import com.google.common.collect.ImmutableSet;
 import me.lucko.luckperms.common.config.ConfigKeys;
 import me.lucko.luckperms.common.plugin.LuckPermsPlugin;
 import me.lucko.luckperms.common.storage.backing.AbstractBacking;
+import me.lucko.luckperms.common.storage.backing.BinaryBacking;
 import me.lucko.luckperms.common.storage.backing.JSONBacking;
 import me.lucko.luckperms.common.storage.backing.MongoDBBacking;
 import me.lucko.luckperms.common.storage.backing.SQLBacking;
@@ -155,6 +156,8 @@ public class StorageFactory {
                 return new MongoDBBacking(plugin, plugin.getConfiguration().get(ConfigKeys.DATABASE_VALUES));
             case YAML:
                 return new YAMLBacking(plugin, plugin.getDataDirectory(), "yaml-storage");
+            case BINARY:
+                return new BinaryBacking(plugin, plugin.getDataDirectory(), "binary-storage");
             default:
                 return new JSONBacking(plugin, plugin.getDataDirectory(), "json-storage");
         }
@@ -32,6 +32,7 @@ public enum StorageType {
 
     JSON("JSON", "json", "flatfile"),
     YAML("YAML", "yaml", "yml"),
+    BINARY("Binary", "binary"),
     MONGODB("MongoDB", "mongodb"),
     MARIADB("MariaDB", "mariadb"),
     MYSQL("MySQL", "mysql"),
@@ -27,15 +27,25 @@ import lombok.Getter;
 import lombok.RequiredArgsConstructor;
 import lombok.Setter;
 
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.Multimap;
+
 import me.lucko.luckperms.api.HeldPermission;
 import me.lucko.luckperms.api.LogEntry;
+import me.lucko.luckperms.api.Node;
+import me.lucko.luckperms.api.context.ImmutableContextSet;
 import me.lucko.luckperms.common.core.model.Group;
 import me.lucko.luckperms.common.core.model.Track;
 import me.lucko.luckperms.common.core.model.User;
 import me.lucko.luckperms.common.data.Log;
 import me.lucko.luckperms.common.plugin.LuckPermsPlugin;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
 
@@ -56,6 +66,15 @@ public abstract class AbstractBacking {
 
     public abstract void shutdown();
 
+    /**
+     * Gets information about the state of the backing, for display in the info command.
+     *
+     * @return the backing meta
+     */
+    public Map<String, String> getMeta() {
+        return Collections.emptyMap();
+    }
+
     public abstract boolean logAction(LogEntry entry);
 
     public abstract Log getLog();
@@ -64,6 +83,22 @@ public abstract class AbstractBacking {
 
     public abstract boolean saveUser(User user);
 
+    /**
+     * Saves a batch of users. Backings which support bulk writes should override this.
+     *
+     * @param users the users to save
+     * @return the users which could not be saved
+     */
+    public Set<User> saveUsers(Collection<User> users) {
+        Set<User> failed = new HashSet<>();
+        for (User user : users) {
+            if (!saveUser(user)) {
+                failed.add(user);
+            }
+        }
+        return failed;
+    }
+
     public abstract boolean cleanupUsers();
 
     public abstract Set<UUID> getUniqueUsers();
@@ -78,6 +113,22 @@ public abstract class AbstractBacking {
 
     public abstract boolean saveGroup(Group group);
 
+    /**
+     * Saves a batch of groups. Backings which support bulk writes should override this.
+     *
+     * @param groups the groups to save
+     * @return the groups which could not be saved
+     */
+    public Set<Group> saveGroups(Collection<Group> groups) {
+        Set<Group> failed = new HashSet<>();
+        for (Group group : groups) {
+            if (!saveGroup(group)) {
+                failed.add(group);
+            }
+        }
+        return failed;
+    }
+
     public abstract boolean deleteGroup(Group group);
 
     public abstract List<HeldPermission<String>> getGroupsWithPermission(String permission);
@@ -98,4 +149,37 @@ public abstract class AbstractBacking {
 
     public abstract String getName(UUID uuid);
 
+    /**
+     * Applies the loaded nodes of many groups at once.
+     *
+     * <p>Each group has its nodes swapped in with a single replace, and caches and state listeners are only
+     * notified once every group in the batch has been updated. This avoids recalculating inheritance against
+     * a half-loaded set of groups, and means each group is only invalidated once.</p>
+     *
+     * @param groups the nodes of each group, keyed by group name
+     */
+    protected void applyGroupNodes(Map<String, ? extends Collection<Node>> groups) {
+        List<Group> loaded = new ArrayList<>(groups.size());
+
+        for (Map.Entry<String, ? extends Collection<Node>> e : groups.entrySet()) {
+            Multimap<ImmutableContextSet, Node> nodes = ArrayListMultimap.create();
+            for (Node n : e.getValue()) {
+                nodes.put(n.getFullContexts().makeImmutable(), n);
+            }
+
+            Group group = plugin.getGroupManager().getOrMake(e.getKey());
+            group.getIoLock().lock();
+            try {
+                group.replaceNodesQuietly(nodes);
+            } finally {
+                group.getIoLock().unlock();
+            }
+            loaded.add(group);
+        }
+
+        for (Group group : loaded) {
+            group.invalidateCachedState();
+        }
+    }
+
 }
@@ -0,0 +1,518 @@
+/*
+ * Copyright (c) 2016 Lucko (Luck) <luck@lucko.me>
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.luckperms.common.storage.backing;
+
+import com.google.common.collect.ImmutableList;
+
+import me.lucko.luckperms.api.HeldPermission;
+import me.lucko.luckperms.api.Node;
+import me.lucko.luckperms.api.context.ImmutableContextSet;
+import me.lucko.luckperms.common.core.NodeModel;
+import me.lucko.luckperms.common.core.UserIdentifier;
+import me.lucko.luckperms.common.core.model.Group;
+import me.lucko.luckperms.common.core.model.Track;
+import me.lucko.luckperms.common.core.model.User;
+import me.lucko.luckperms.common.managers.GroupManager;
+import me.lucko.luckperms.common.managers.TrackManager;
+import me.lucko.luckperms.common.managers.impl.GenericUserManager;
+import me.lucko.luckperms.common.plugin.LuckPermsPlugin;
+import me.lucko.luckperms.common.storage.backing.utils.SegmentFile;
+import me.lucko.luckperms.common.storage.holder.NodeHeldPermission;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+/**
+ * Stores all users, groups and tracks in a single {@link SegmentFile}, rather than one file per holder.
+ */
+public class BinaryBacking extends FlatfileBacking {
+    private static final byte USER = 1;
+    private static final byte GROUP = 2;
+    private static final byte TRACK = 3;
+
+    private SegmentFile segment;
+
+    public BinaryBacking(LuckPermsPlugin plugin, File pluginDir, String dataFolderName) {
+        super(plugin, "Binary", pluginDir, ".dat", dataFolderName);
+    }
+
+    @Override
+    protected void setupHolderFiles(File data) throws IOException {
+        segment = new SegmentFile(new File(data, "holders" + getFileExtension()));
+        long discarded = segment.open();
+        if (discarded != 0) {
+            plugin.getLog().warn("Discarded " + discarded + " bytes of incomplete data from the end of the holders file.");
+        }
+    }
+
+    @Override
+    public void shutdown() {
+        super.shutdown();
+
+        if (segment != null) {
+            try {
+                segment.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    @Override
+    public boolean loadUser(UUID uuid, String username) {
+        User user = plugin.getUserManager().getOrMake(UserIdentifier.of(uuid, username));
+        user.getIoLock().lock();
+        try {
+            return call(() -> {
+                byte[] data = segment.read(USER, uuid.toString());
+
+                if (data != null) {
+                    DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+                    String name = readNullableString(in);
+                    user.getPrimaryGroup().setStoredValue(readNullableString(in));
+                    user.setNodes(readNodes(in).stream().map(NodeModel::toNode).collect(Collectors.toSet()));
+
+                    boolean save = plugin.getUserManager().giveDefaultIfNeeded(user, false);
+
+                    if (user.getName() == null || user.getName().equalsIgnoreCase("null")) {
+                        user.setName(name);
+                    } else {
+                        if (!user.getName().equalsIgnoreCase(name)) {
+                            save = true;
+                        }
+                    }
+
+                    if (save) {
+                        saveUser(user);
+                    }
+                } else {
+                    if (GenericUserManager.shouldSave(user)) {
+                        user.clearNodes();
+                        user.getPrimaryGroup().setStoredValue(null);
+                        plugin.getUserManager().giveDefaultIfNeeded(user, false);
+                    }
+                }
+                return true;
+            }, false);
+        } finally {
+            user.getIoLock().unlock();
+            user.getRefreshBuffer().requestDirectly();
+        }
+    }
+
+    @Override
+    public boolean saveUser(User user) {
+        user.getIoLock().lock();
+        try {
+            return call(() -> {
+                if (!GenericUserManager.shouldSave(user)) {
+                    segment.delete(USER, user.getUuid().toString());
+                    return true;
+                }
+
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                DataOutputStream out = new DataOutputStream(bytes);
+                writeNullableString(out, user.getName());
+                writeNullableString(out, user.getPrimaryGroup().getStoredValue());
+                writeNodes(out, user.getNodes().values());
+
+                segment.write(USER, user.getUuid().toString(), bytes.toByteArray());
+                return true;
+            }, false);
+        } finally {
+            user.getIoLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean cleanupUsers() {
+        return call(() -> {
+            List<String> toDelete = new ArrayList<>();
+            segment.forEach(USER, (uuid, data) -> {
+                Set<NodeModel> nodes = readUserNodes(data);
+
+                if (nodes.size() == 1) {
+                    // There's only one
+                    NodeModel node = nodes.iterator().next();
+                    if (node.getPermission().equalsIgnoreCase("group.default") && node.isValue()) {
+                        toDelete.add(uuid);
+                    }
+                }
+            });
+
+            for (String uuid : toDelete) {
+                segment.delete(USER, uuid);
+            }
+            return true;
+        }, false);
+    }
+
+    @Override
+    public Set<UUID> getUniqueUsers() {
+        return segment.keys(USER).stream().map(UUID::fromString).collect(Collectors.toSet());
+    }
+
+    @Override
+    public List<HeldPermission<UUID>> getUsersWithPermission(String permission) {
+        ImmutableList.Builder<HeldPermission<UUID>> held = ImmutableList.builder();
+        boolean success = call(() -> {
+            segment.forEach(USER, (uuid, data) -> {
+                UUID holder = UUID.fromString(uuid);
+                for (NodeModel e : readUserNodes(data)) {
+                    if (e.getPermission().equalsIgnoreCase(permission)) {
+                        held.add(NodeHeldPermission.of(holder, e));
+                    }
+                }
+            });
+            return true;
+        }, false);
+        return success ? held.build() : null;
+    }
+
+    @Override
+    public boolean createAndLoadGroup(String name) {
+        Group group = plugin.getGroupManager().getOrMake(name);
+        group.getIoLock().lock();
+        try {
+            return call(() -> {
+                byte[] data = segment.read(GROUP, name);
+
+                if (data != null) {
+                    group.setNodes(decodeGroupNodes(data));
+                } else {
+                    segment.write(GROUP, name, writeGroup(group));
+                }
+                return true;
+            }, false);
+        } finally {
+            group.getIoLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean loadGroup(String name) {
+        Group group = plugin.getGroupManager().getOrMake(name);
+        group.getIoLock().lock();
+        try {
+            return call(() -> {
+                Set<Node> nodes = readGroupNodes(name);
+                if (nodes == null) {
+                    return false;
+                }
+
+                group.setNodes(nodes);
+                return true;
+            }, false);
+        } finally {
+            group.getIoLock().unlock();
+        }
+    }
+
+    @Override
+    protected Set<Node> readGroupNodes(String name) {
+        return call(() -> {
+            byte[] data = segment.read(GROUP, name);
+            return data == null ? null : decodeGroupNodes(data);
+        }, null);
+    }
+
+    @Override
+    public boolean loadAllGroups() {
+        return call(() -> {
+            // read every group in one pass over the file
+            Map<String, Set<Node>> groups = new HashMap<>();
+            segment.forEach(GROUP, (name, data) -> groups.put(name, decodeGroupNodes(data)));
+
+            applyGroupNodes(groups);
+
+            GroupManager gm = plugin.getGroupManager();
+            gm.getAll().values().stream()
+                    .filter(g -> !groups.containsKey(g.getName()))
+                    .forEach(gm::unload);
+            return true;
+        }, false);
+    }
+
+    @Override
+    public boolean saveGroup(Group group) {
+        group.getIoLock().lock();
+        try {
+            return call(() -> {
+                segment.write(GROUP, group.getName(), writeGroup(group));
+                return true;
+            }, false);
+        } finally {
+            group.getIoLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean deleteGroup(Group group) {
+        group.getIoLock().lock();
+        try {
+            return call(() -> {
+                segment.delete(GROUP, group.getName());
+                return true;
+            }, false);
+        } finally {
+            group.getIoLock().unlock();
+        }
+    }
+
+    @Override
+    public List<HeldPermission<String>> getGroupsWithPermission(String permission) {
+        ImmutableList.Builder<HeldPermission<String>> held = ImmutableList.builder();
+        boolean success = call(() -> {
+            segment.forEach(GROUP, (holder, data) -> {
+                for (NodeModel e : readNodes(data)) {
+                    if (e.getPermission().equalsIgnoreCase(permission)) {
+                        held.add(NodeHeldPermission.of(holder, e));
+                    }
+                }
+            });
+            return true;
+        }, false);
+        return success ? held.build() : null;
+    }
+
+    @Override
+    public boolean createAndLoadTrack(String name) {
+        Track track = plugin.getTrackManager().getOrMake(name);
+        track.getIoLock().lock();
+        try {
+            return call(() -> {
+                byte[] data = segment.read(TRACK, name);
+
+                if (data != null) {
+                    track.setGroups(decodeTrackGroups(data));
+                } else {
+                    segment.write(TRACK, name, writeTrack(track));
+                }
+                return true;
+            }, false);
+        } finally {
+            track.getIoLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean loadTrack(String name) {
+        Track track = plugin.getTrackManager().getOrMake(name);
+        track.getIoLock().lock();
+        try {
+            return call(() -> {
+                List<String> groups = readTrackGroups(name);
+                if (groups == null) {
+                    return false;
+                }
+
+                track.setGroups(groups);
+                return true;
+            }, false);
+        } finally {
+            track.getIoLock().unlock();
+        }
+    }
+
+    @Override
+    protected List<String> readTrackGroups(String name) {
+        return call(() -> {
+            byte[] data = segment.read(TRACK, name);
+            return data == null ? null : decodeTrackGroups(data);
+        }, null);
+    }
+
+    @Override
+    public boolean loadAllTracks() {
+        return call(() -> {
+            Map<String, byte[]> tracks = new HashMap<>();
+            segment.forEach(TRACK, tracks::put);
+
+            for (Map.Entry<String, byte[]> e : tracks.entrySet()) {
+                Track track = plugin.getTrackManager().getOrMake(e.getKey());
+                track.getIoLock().lock();
+                try {
+                    track.setGroups(decodeTrackGroups(e.getValue()));
+                } finally {
+                    track.getIoLock().unlock();
+                }
+            }
+
+            TrackManager tm = plugin.getTrackManager();
+            tm.getAll().values().stream()
+                    .filter(t -> !tracks.containsKey(t.getName()))
+                    .forEach(tm::unload);
+            return true;
+        }, false);
+    }
+
+    @Override
+    public boolean saveTrack(Track track) {
+        track.getIoLock().lock();
+        try {
+            return call(() -> {
+                segment.write(TRACK, track.getName(), writeTrack(track));
+                return true;
+            }, false);
+        } finally {
+            track.getIoLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean deleteTrack(Track track) {
+        track.getIoLock().lock();
+        try {
+            return call(() -> {
+                segment.delete(TRACK, track.getName());
+                return true;
+            }, false);
+        } finally {
+            track.getIoLock().unlock();
+        }
+    }
+
+    private static byte[] writeGroup(Group group) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        writeNodes(new DataOutputStream(bytes), group.getNodes().values());
+        return bytes.toByteArray();
+    }
+
+    private static byte[] writeTrack(Track track) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        List<String> groups = track.getGroups();
+        out.writeInt(groups.size());
+        for (String group : groups) {
+            out.writeUTF(group);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static Set<Node> decodeGroupNodes(byte[] data) {
+        return readNodes(data).stream().map(NodeModel::toNode).collect(Collectors.toSet());
+    }
+
+    private static Set<NodeModel> readNodes(byte[] data) {
+        try {
+            return readNodes(new DataInputStream(new ByteArrayInputStream(data)));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static Set<NodeModel> readUserNodes(byte[] data) {
+        try {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+            readNullableString(in); // name
+            readNullableString(in); // primary group
+            return readNodes(in);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static List<String> decodeTrackGroups(byte[] data) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+        int size = in.readInt();
+        List<String> groups = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            groups.add(in.readUTF());
+        }
+        return groups;
+    }
+
+    private static void writeNodes(DataOutputStream out, Iterable<? extends Node> nodes) throws IOException {
+        Set<NodeModel> models = new LinkedHashSet<>();
+        for (Node node : nodes) {
+            models.add(NodeModel.fromNode(node));
+        }
+
+        out.writeInt(models.size());
+        for (NodeModel node : models) {
+            out.writeUTF(node.getPermission());
+            out.writeBoolean(node.isValue());
+            out.writeUTF(node.getServer());
+            out.writeUTF(node.getWorld());
+            out.writeLong(node.getExpiry());
+
+            Set<Map.Entry<String, String>> context = node.getContexts().toSet();
+            out.writeInt(context.size());
+            for (Map.Entry<String, String> e : context) {
+                out.writeUTF(e.getKey());
+                out.writeUTF(e.getValue());
+            }
+        }
+    }
+
+    private static Set<NodeModel> readNodes(DataInputStream in) throws IOException {
+        int size = in.readInt();
+        Set<NodeModel> nodes = new HashSet<>(size);
+        for (int i = 0; i < size; i++) {
+            String permission = in.readUTF();
+            boolean value = in.readBoolean();
+            String server = in.readUTF();
+            String world = in.readUTF();
+            long expiry = in.readLong();
+
+            int contextSize = in.readInt();
+            ImmutableContextSet context = ImmutableContextSet.empty();
+            if (contextSize != 0) {
+                List<Map.Entry<String, String>> entries = new ArrayList<>(contextSize);
+                for (int j = 0; j < contextSize; j++) {
+                    entries.add(new AbstractMap.SimpleImmutableEntry<>(in.readUTF(), in.readUTF()));
+                }
+                context = ImmutableContextSet.fromEntries(entries);
+            }
+
+            nodes.add(NodeModel.of(permission, value, server, world, expiry, context));
+        }
+        return nodes;
+    }
+
+    private static void writeNullableString(DataOutputStream out, String s) throws IOException {
+        out.writeBoolean(s != null);
+        if (s != null) {
+            out.writeUTF(s);
+        }
+    }
+
+    private static String readNullableString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+}
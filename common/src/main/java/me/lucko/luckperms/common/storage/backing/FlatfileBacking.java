@@ -25,6 +25,7 @@ package me.lucko.luckperms.common.storage.backing;
 import lombok.Getter;
 
 import me.lucko.luckperms.api.LogEntry;
+import me.lucko.luckperms.api.Node;
 import me.lucko.luckperms.common.commands.utils.Util;
 import me.lucko.luckperms.common.constants.Constants;
 import me.lucko.luckperms.common.core.model.Group;
@@ -36,13 +37,22 @@ import me.lucko.luckperms.common.managers.TrackManager;
 import me.lucko.luckperms.common.plugin.LuckPermsPlugin;
 import me.lucko.luckperms.common.storage.backing.utils.LegacyJSONSchemaMigration;
 import me.lucko.luckperms.common.storage.backing.utils.LegacyYAMLSchemaMigration;
+import me.lucko.luckperms.common.utils.FileWatcher;
 
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.Arrays;
 import java.util.Date;
 import java.util.HashMap;
@@ -52,7 +62,12 @@ import java.util.Properties;
 import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
 import java.util.logging.FileHandler;
 import java.util.logging.Formatter;
 import java.util.logging.Level;
@@ -63,6 +78,12 @@ import java.util.stream.Collectors;
 public abstract class FlatfileBacking extends AbstractBacking {
     private static final String LOG_FORMAT = "%s(%s): [%s] %s(%s) --> %s";
 
+    // The number of entries appended to the uuid journal before it is folded back into the cache file.
+    private static final int UUID_JOURNAL_COMPACT_THRESHOLD = 1000;
+
+    // The maximum number of files read at once when loading all groups or tracks.
+    private static final int MAX_READ_THREADS = 4;
+
     protected static <T> T call(Callable<T> c, T def) {
         try {
             return c.call();
@@ -72,6 +93,37 @@ public abstract class FlatfileBacking extends AbstractBacking {
         }
     }
 
+    @FunctionalInterface
+    protected interface WriteOperation {
+        void write(BufferedWriter writer) throws IOException;
+    }
+
+    /**
+     * Writes to a temporary file, syncs it to disk, and then moves it over the target file.
+     * The target is never left partially written, even if the server crashes mid-write.
+     *
+     * @param file the file to write to
+     * @param operation the write operation
+     * @throws IOException if the write fails
+     */
+    protected static void writeAtomically(File file, WriteOperation operation) throws IOException {
+        Path target = file.toPath();
+        Path temp = target.resolveSibling(file.getName() + FileWatcher.TEMP_FILE_SUFFIX);
+
+        try (FileOutputStream out = new FileOutputStream(temp.toFile());
+             BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8))) {
+            operation.write(writer);
+            writer.flush();
+            out.getFD().sync();
+        }
+
+        try {
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
     private final Logger actionLogger = Logger.getLogger("lp_actions");
     private Map<String, String> uuidCache = new ConcurrentHashMap<>();
 
@@ -83,7 +135,11 @@ public abstract class FlatfileBacking extends AbstractBacking {
     private final String dataFolderName;
 
     private File uuidData;
+    private File uuidJournal;
+    private FileChannel uuidJournalChannel;
+    private int uuidJournalEntries = 0;
     private File actionLog;
+    private ExecutorService readExecutor;
     protected File usersDir;
     protected File groupsDir;
     protected File tracksDir;
@@ -106,6 +162,17 @@ public abstract class FlatfileBacking extends AbstractBacking {
 
         uuidCache.putAll(getUUIDCache());
 
+        // replay any changes made since the cache file was last written, then fold them into it
+        uuidJournalEntries = replayUUIDJournal(uuidCache);
+        try {
+            uuidJournalChannel = FileChannel.open(uuidJournal.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        if (uuidJournalEntries != 0) {
+            compactUUIDCache();
+        }
+
         try {
             FileHandler fh = new FileHandler(actionLog.getAbsolutePath(), 0, 1, true);
             fh.setFormatter(new Formatter() {
@@ -122,6 +189,14 @@ public abstract class FlatfileBacking extends AbstractBacking {
             e.printStackTrace();
         }
 
+        AtomicInteger threadId = new AtomicInteger(0);
+        int threads = Math.max(1, Math.min(MAX_READ_THREADS, Runtime.getRuntime().availableProcessors()));
+        readExecutor = Executors.newFixedThreadPool(threads, r -> {
+            Thread thread = new Thread(r, "luckperms-" + getFileExtension().substring(1) + "-read-" + threadId.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+
         cleanupUsers();
         setAcceptingLogins(true);
     }
@@ -152,6 +227,24 @@ public abstract class FlatfileBacking extends AbstractBacking {
             }
         }
 
+        setupHolderFiles(data);
+
+        uuidData = new File(data, "uuidcache.txt");
+        uuidData.createNewFile();
+
+        uuidJournal = new File(data, "uuidcache.journal");
+
+        actionLog = new File(data, "actions.log");
+        actionLog.createNewFile();
+    }
+
+    /**
+     * Sets up the files used to store users, groups and tracks.
+     *
+     * @param data the data directory
+     * @throws IOException if the files could not be set up
+     */
+    protected void setupHolderFiles(File data) throws IOException {
         usersDir = new File(data, "users");
         usersDir.mkdir();
 
@@ -161,12 +254,6 @@ public abstract class FlatfileBacking extends AbstractBacking {
         tracksDir = new File(data, "tracks");
         tracksDir.mkdir();
 
-        uuidData = new File(data, "uuidcache.txt");
-        uuidData.createNewFile();
-
-        actionLog = new File(data, "actions.log");
-        actionLog.createNewFile();
-
         // Listen for file changes.
         plugin.applyToFileWatcher(watcher -> {
             watcher.subscribe("users", usersDir.toPath(), s -> {
@@ -209,7 +296,19 @@ public abstract class FlatfileBacking extends AbstractBacking {
 
     @Override
     public void shutdown() {
-        saveUUIDCache(uuidCache);
+        if (readExecutor != null) {
+            readExecutor.shutdown();
+        }
+
+        compactUUIDCache();
+
+        if (uuidJournalChannel != null) {
+            try {
+                uuidJournalChannel.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
     }
 
     protected void registerFileAction(String type, File file) {
@@ -245,6 +344,46 @@ public abstract class FlatfileBacking extends AbstractBacking {
                 .collect(Collectors.toSet());
     }
 
+    /**
+     * Reads the nodes of a group from storage.
+     *
+     * @param name the name of the group
+     * @return the groups nodes, or null if the group doesn't exist or couldn't be read
+     */
+    protected abstract Set<Node> readGroupNodes(String name);
+
+    /**
+     * Reads the groups on a track from storage.
+     *
+     * @param name the name of the track
+     * @return the tracks groups, or null if the track doesn't exist or couldn't be read
+     */
+    protected abstract List<String> readTrackGroups(String name);
+
+    /**
+     * Reads many files at once using the read executor.
+     *
+     * @param names the names to read
+     * @param reader the read function, returning null if the read failed
+     * @param <T> the result type
+     * @return the results of each successful read, keyed by name
+     */
+    private <T> Map<String, T> readAll(List<String> names, Function<String, T> reader) {
+        Map<String, CompletableFuture<T>> futures = new HashMap<>();
+        for (String name : names) {
+            futures.put(name, CompletableFuture.supplyAsync(() -> reader.apply(name), readExecutor));
+        }
+
+        Map<String, T> results = new HashMap<>();
+        for (Map.Entry<String, CompletableFuture<T>> e : futures.entrySet()) {
+            T result = e.getValue().join();
+            if (result != null) {
+                results.put(e.getKey(), result);
+            }
+        }
+        return results;
+    }
+
     @Override
     public boolean loadAllGroups() {
         String[] fileNames = groupsDir.list((dir, name) -> name.endsWith(fileExtension));
@@ -253,7 +392,7 @@ public abstract class FlatfileBacking extends AbstractBacking {
                 .map(s -> s.substring(0, s.length() - fileExtension.length()))
                 .collect(Collectors.toList());
 
-        groups.forEach(this::loadGroup);
+        applyGroupNodes(readAll(groups, this::readGroupNodes));
 
         GroupManager gm = plugin.getGroupManager();
         gm.getAll().values().stream()
@@ -288,7 +427,16 @@ public abstract class FlatfileBacking extends AbstractBacking {
                 .map(s -> s.substring(0, s.length() - fileExtension.length()))
                 .collect(Collectors.toList());
 
-        tracks.forEach(this::loadTrack);
+        Map<String, List<String>> loaded = readAll(tracks, this::readTrackGroups);
+        for (Map.Entry<String, List<String>> e : loaded.entrySet()) {
+            Track track = plugin.getTrackManager().getOrMake(e.getKey());
+            track.getIoLock().lock();
+            try {
+                track.setGroups(e.getValue());
+            } finally {
+                track.getIoLock().unlock();
+            }
+        }
 
         TrackManager tm = plugin.getTrackManager();
         tm.getAll().values().stream()
@@ -318,8 +466,10 @@ public abstract class FlatfileBacking extends AbstractBacking {
     @Override
     public boolean saveUUIDData(String username, UUID uuid) {
         username = username.toLowerCase();
-        uuidCache.put(username, uuid.toString());
-        return true;
+        String value = uuid.toString();
+
+        String previous = uuidCache.put(username, value);
+        return value.equals(previous) || appendToUUIDJournal(username, value);
     }
 
     @Override
@@ -354,12 +504,71 @@ public abstract class FlatfileBacking extends AbstractBacking {
         return cache;
     }
 
-    private void saveUUIDCache(Map<String, String> cache) {
-        try (BufferedWriter writer = Files.newBufferedWriter(uuidData.toPath(), StandardCharsets.UTF_8)) {
+    private boolean saveUUIDCache(Map<String, String> cache) {
+        try {
             Properties properties = new Properties();
             properties.putAll(cache);
-            properties.store(writer, null);
-            writer.flush();
+            writeAtomically(uuidData, writer -> properties.store(writer, null));
+            return true;
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    private int replayUUIDJournal(Map<String, String> cache) {
+        if (!uuidJournal.exists()) {
+            return 0;
+        }
+
+        int entries = 0;
+        try (BufferedReader reader = Files.newBufferedReader(uuidJournal.toPath(), StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                // the last line may have been cut short by a crash
+                int i = line.indexOf('=');
+                if (i <= 0 || Util.parseUuid(line.substring(i + 1)) == null) {
+                    continue;
+                }
+
+                cache.put(line.substring(0, i), line.substring(i + 1));
+                entries++;
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return entries;
+    }
+
+    private synchronized boolean appendToUUIDJournal(String username, String uuid) {
+        if (uuidJournalChannel == null) {
+            return false;
+        }
+
+        try {
+            uuidJournalChannel.write(ByteBuffer.wrap((username + "=" + uuid + "\n").getBytes(StandardCharsets.UTF_8)));
+            uuidJournalChannel.force(false);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        }
+
+        if (++uuidJournalEntries >= UUID_JOURNAL_COMPACT_THRESHOLD) {
+            compactUUIDCache();
+        }
+        return true;
+    }
+
+    private synchronized void compactUUIDCache() {
+        // only discard the journal once its entries are safely in the cache file
+        if (!saveUUIDCache(uuidCache) || uuidJournalChannel == null) {
+            return;
+        }
+
+        try {
+            uuidJournalChannel.truncate(0);
+            uuidJournalChannel.force(true);
+            uuidJournalEntries = 0;
         } catch (IOException e) {
             e.printStackTrace();
         }
@@ -45,9 +45,7 @@ import me.lucko.luckperms.common.plugin.LuckPermsPlugin;
 import me.lucko.luckperms.common.storage.holder.NodeHeldPermission;
 
 import java.io.BufferedReader;
-import java.io.BufferedWriter;
 import java.io.File;
-import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.util.ArrayList;
@@ -70,9 +68,8 @@ public class JSONBacking extends FlatfileBacking {
     }
 
     public boolean writeElementToFile(File file, JsonElement element) {
-        try (BufferedWriter writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
-            gson.toJson(element, writer);
-            writer.flush();
+        try {
+            writeAtomically(file, writer -> gson.toJson(element, writer));
             return true;
         } catch (Throwable t) {
             plugin.getLog().warn("Exception whilst writing to file: " + file.getAbsolutePath());
@@ -157,15 +154,6 @@ public class JSONBacking extends FlatfileBacking {
                     return true;
                 }
 
-                if (!userFile.exists()) {
-                    try {
-                        userFile.createNewFile();
-                    } catch (IOException e) {
-                        e.printStackTrace();
-                        return false;
-                    }
-                }
-
                 JsonObject data = new JsonObject();
                 data.addProperty("uuid", user.getUuid().toString());
                 data.addProperty("name", user.getName());
@@ -260,13 +248,6 @@ public class JSONBacking extends FlatfileBacking {
                         return true;
                     });
                 } else {
-                    try {
-                        groupFile.createNewFile();
-                    } catch (IOException e) {
-                        e.printStackTrace();
-                        return false;
-                    }
-
                     JsonObject data = new JsonObject();
                     data.addProperty("name", group.getName());
 
@@ -287,21 +268,37 @@ public class JSONBacking extends FlatfileBacking {
         group.getIoLock().lock();
         try {
             return call(() -> {
-                File groupFile = new File(groupsDir, name + ".json");
-                registerFileAction("groups", groupFile);
+                Set<Node> nodes = readGroupNodes(name);
+                if (nodes == null) {
+                    return false;
+                }
 
-                return groupFile.exists() && readObjectFromFile(groupFile, object -> {
-                    Set<NodeModel> data = deserializePermissions(object.get("permissions").getAsJsonArray());
-                    Set<Node> nodes = data.stream().map(NodeModel::toNode).collect(Collectors.toSet());
-                    group.setNodes(nodes);
-                    return true;
-                });
+                group.setNodes(nodes);
+                return true;
             }, false);
         } finally {
             group.getIoLock().unlock();
         }
     }
 
+    @Override
+    protected Set<Node> readGroupNodes(String name) {
+        File groupFile = new File(groupsDir, name + ".json");
+        registerFileAction("groups", groupFile);
+
+        if (!groupFile.exists()) {
+            return null;
+        }
+
+        Set<Node> nodes = new HashSet<>();
+        boolean success = readObjectFromFile(groupFile, object -> {
+            Set<NodeModel> data = deserializePermissions(object.get("permissions").getAsJsonArray());
+            data.stream().map(NodeModel::toNode).forEach(nodes::add);
+            return true;
+        });
+        return success ? nodes : null;
+    }
+
     @Override
     public boolean saveGroup(Group group) {
         group.getIoLock().lock();
@@ -310,15 +307,6 @@ public class JSONBacking extends FlatfileBacking {
                 File groupFile = new File(groupsDir, group.getName() + ".json");
                 registerFileAction("groups", groupFile);
 
-                if (!groupFile.exists()) {
-                    try {
-                        groupFile.createNewFile();
-                    } catch (IOException e) {
-                        e.printStackTrace();
-                        return false;
-                    }
-                }
-
                 JsonObject data = new JsonObject();
                 data.addProperty("name", group.getName());
                 Set<NodeModel> nodes = group.getNodes().values().stream().map(NodeModel::fromNode).collect(Collectors.toCollection(LinkedHashSet::new));
@@ -379,13 +367,6 @@ public class JSONBacking extends FlatfileBacking {
                         return true;
                     });
                 } else {
-                    try {
-                        trackFile.createNewFile();
-                    } catch (IOException e) {
-                        e.printStackTrace();
-                        return false;
-                    }
-
                     JsonObject data = new JsonObject();
                     data.addProperty("name", track.getName());
                     JsonArray groups = new JsonArray();
@@ -408,24 +389,38 @@ public class JSONBacking extends FlatfileBacking {
         track.getIoLock().lock();
         try {
             return call(() -> {
-                File trackFile = new File(tracksDir, name + ".json");
-                registerFileAction("tracks", trackFile);
-
-                return trackFile.exists() && readObjectFromFile(trackFile, element -> {
-                    List<String> groups = new ArrayList<>();
-                    for (JsonElement g : element.get("groups").getAsJsonArray()) {
-                        groups.add(g.getAsString());
-                    }
-                    track.setGroups(groups);
-                    return true;
-                });
+                List<String> groups = readTrackGroups(name);
+                if (groups == null) {
+                    return false;
+                }
 
+                track.setGroups(groups);
+                return true;
             }, false);
         } finally {
             track.getIoLock().unlock();
         }
     }
 
+    @Override
+    protected List<String> readTrackGroups(String name) {
+        File trackFile = new File(tracksDir, name + ".json");
+        registerFileAction("tracks", trackFile);
+
+        if (!trackFile.exists()) {
+            return null;
+        }
+
+        List<String> groups = new ArrayList<>();
+        boolean success = readObjectFromFile(trackFile, element -> {
+            for (JsonElement g : element.get("groups").getAsJsonArray()) {
+                groups.add(g.getAsString());
+            }
+            return true;
+        });
+        return success ? groups : null;
+    }
+
     @Override
     public boolean saveTrack(Track track) {
         track.getIoLock().lock();
@@ -434,15 +429,6 @@ public class JSONBacking extends FlatfileBacking {
                 File trackFile = new File(tracksDir, track.getName() + ".json");
                 registerFileAction("tracks", trackFile);
 
-                if (!trackFile.exists()) {
-                    try {
-                        trackFile.createNewFile();
-                    } catch (IOException e) {
-                        e.printStackTrace();
-                        return false;
-                    }
-                }
-
                 JsonObject data = new JsonObject();
                 data.addProperty("name", track.getName());
                 JsonArray groups = new JsonArray();
@@ -22,19 +22,38 @@
 
 package me.lucko.luckperms.common.storage.backing;
 
+import lombok.Getter;
+import lombok.Setter;
+
 import com.google.common.collect.ImmutableList;
+import com.mongodb.MongoBulkWriteException;
 import com.mongodb.MongoClient;
+import com.mongodb.MongoClientOptions;
 import com.mongodb.MongoCredential;
 import com.mongodb.ServerAddress;
+import com.mongodb.WriteConcern;
+import com.mongodb.bulk.BulkWriteError;
 import com.mongodb.client.MongoCollection;
 import com.mongodb.client.MongoCursor;
 import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.DeleteOneModel;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.FindOneAndUpdateOptions;
+import com.mongodb.client.model.Indexes;
 import com.mongodb.client.model.InsertOneOptions;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.ReplaceOneModel;
+import com.mongodb.client.model.ReturnDocument;
+import com.mongodb.client.model.UpdateOptions;
+import com.mongodb.client.model.WriteModel;
 
 import me.lucko.luckperms.api.HeldPermission;
 import me.lucko.luckperms.api.LogEntry;
 import me.lucko.luckperms.api.Node;
+import me.lucko.luckperms.api.context.MutableContextSet;
 import me.lucko.luckperms.common.core.NodeFactory;
+import me.lucko.luckperms.common.core.NodeModel;
 import me.lucko.luckperms.common.core.UserIdentifier;
 import me.lucko.luckperms.common.core.model.Group;
 import me.lucko.luckperms.common.core.model.Track;
@@ -45,12 +64,16 @@ import me.lucko.luckperms.common.managers.TrackManager;
 import me.lucko.luckperms.common.managers.impl.GenericUserManager;
 import me.lucko.luckperms.common.plugin.LuckPermsPlugin;
 import me.lucko.luckperms.common.storage.DatastoreConfiguration;
+import me.lucko.luckperms.common.storage.backing.utils.LegacyMongoSchemaMigration;
 import me.lucko.luckperms.common.storage.holder.NodeHeldPermission;
 
 import org.bson.Document;
+import org.bson.conversions.Bson;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -73,57 +96,159 @@ public class MongoDBBacking extends AbstractBacking {
         }
     }
 
+    /**
+     * Runs an unordered bulk write, where each write corresponds to the holder at the same index.
+     *
+     * <p>Success is judged by the absence of an exception rather than by the write being acknowledged, so that writes
+     * made with an unacknowledged write concern aren't all reported as failures.</p>
+     *
+     * @return the holders whose writes failed
+     */
+    private <T> Set<T> bulkWrite(String collection, List<T> holders, List<WriteModel<Document>> writes) {
+        if (writes.isEmpty()) {
+            return Collections.emptySet();
+        }
+
+        try {
+            database.getCollection(collection).bulkWrite(writes, UNORDERED);
+            return Collections.emptySet();
+        } catch (MongoBulkWriteException e) {
+            e.printStackTrace();
+            if (e.getWriteConcernError() != null) {
+                return new HashSet<>(holders);
+            }
+
+            Set<T> failed = new HashSet<>();
+            for (BulkWriteError error : e.getWriteErrors()) {
+                failed.add(holders.get(error.getIndex()));
+            }
+            return failed;
+        } catch (Exception e) {
+            e.printStackTrace();
+            return new HashSet<>(holders);
+        }
+    }
+
     /*  MongoDB does not allow '.' or '$' in key names.
         See: https://docs.mongodb.com/manual/reference/limits/#Restrictions-on-Field-Names
-        The following two methods convert the node maps so they can be stored. */
+        Documents in the legacy format stored nodes as a map, with the keys converted using these methods.
+        Nodes are now stored as an array of subdocuments, which doesn't need any conversion, and can be indexed. */
 
-    private static final Function<String, String> CONVERT_STRING = s -> s.replace(".", "[**DOT**]").replace("$", "[**DOLLAR**]");
     private static final Function<String, String> REVERT_STRING = s -> s.replace("[**DOT**]", ".").replace("[**DOLLAR**]", "$");
 
-    private static <V> Map<String, V> convert(Map<String, V> map) {
-        return map.entrySet().stream()
-                .collect(Collectors.toMap(e -> CONVERT_STRING.apply(e.getKey()), Map.Entry::getValue));
-    }
-
     private static <V> Map<String, V> revert(Map<String, V> map) {
         return map.entrySet().stream()
                 .collect(Collectors.toMap(e -> REVERT_STRING.apply(e.getKey()), Map.Entry::getValue));
     }
 
-    private static Document fromUser(User user) {
-        Document main = new Document("_id", user.getUuid())
-                .append("name", user.getName())
-                .append("primaryGroup", user.getPrimaryGroup().getStoredValue());
+    public static List<Document> serializePermissions(Collection<Node> nodes) {
+        List<Document> permissions = new ArrayList<>(nodes.size());
+        for (Node node : nodes) {
+            permissions.add(serializeNode(NodeModel.fromNode(node)));
+        }
+        return permissions;
+    }
 
-        Document perms = new Document();
-        for (Map.Entry<String, Boolean> e : convert(exportToLegacy(user.getNodes().values())).entrySet()) {
-            perms.append(e.getKey(), e.getValue());
+    private static Document serializeNode(NodeModel node) {
+        List<Document> context = new ArrayList<>();
+        for (Map.Entry<String, String> e : node.getContexts().toSet()) {
+            context.add(new Document("key", e.getKey()).append("value", e.getValue()));
         }
 
-        main.append("perms", perms);
-        return main;
+        return new Document("permission", node.getPermission())
+                // lowercase copy of the permission, for indexed case-insensitive searches
+                .append("key", node.getPermission().toLowerCase())
+                .append("value", node.isValue())
+                .append("server", node.getServer())
+                .append("world", node.getWorld())
+                .append("expiry", node.getExpiry())
+                .append("context", context);
     }
 
-    private static Document fromGroup(Group group) {
-        Document main = new Document("_id", group.getName());
+    private static NodeModel deserializeNode(Document d) {
+        MutableContextSet context = MutableContextSet.create();
+        List<Document> contextList = (List<Document>) d.get("context");
+        if (contextList != null) {
+            for (Document e : contextList) {
+                context.add(e.getString("key"), e.getString("value"));
+            }
+        }
+
+        return NodeModel.of(
+                d.getString("permission"),
+                d.getBoolean("value", true),
+                d.getString("server"),
+                d.getString("world"),
+                d.getLong("expiry"),
+                context.makeImmutable()
+        );
+    }
+
+    /**
+     * Reads the nodes from a user or group document, in either the current or the legacy format.
+     *
+     * @param d the document
+     * @return the nodes
+     */
+    public static Set<NodeModel> deserializePermissions(Document d) {
+        List<Document> permissions = (List<Document>) d.get("permissions");
+        if (permissions != null) {
+            return permissions.stream().map(MongoDBBacking::deserializeNode).collect(Collectors.toSet());
+        }
 
-        Document perms = new Document();
-        for (Map.Entry<String, Boolean> e : convert(exportToLegacy(group.getNodes().values())).entrySet()) {
-            perms.append(e.getKey(), e.getValue());
+        Map<String, Boolean> legacy = (Map<String, Boolean>) d.get("perms");
+        if (legacy == null) {
+            return new HashSet<>();
         }
 
-        main.append("perms", perms);
-        return main;
+        return revert(legacy).entrySet().stream()
+                .map(e -> NodeModel.fromNode(NodeFactory.fromSerializedNode(e.getKey(), e.getValue())))
+                .collect(Collectors.toSet());
+    }
+
+    private static Set<Node> readNodes(Document d) {
+        return deserializePermissions(d).stream().map(NodeModel::toNode).collect(Collectors.toSet());
+    }
+
+    private static Document fromUser(User user) {
+        return new Document("_id", user.getUuid())
+                .append("name", user.getName())
+                .append("primaryGroup", user.getPrimaryGroup().getStoredValue())
+                .append("permissions", serializePermissions(user.getNodes().values()));
+    }
+
+    private static Document fromGroup(Group group) {
+        return new Document("_id", group.getName())
+                .append("permissions", serializePermissions(group.getNodes().values()));
     }
 
     private static Document fromTrack(Track track) {
         return new Document("_id", track.getName()).append("groups", track.getGroups());
     }
 
+    private static final UpdateOptions UPSERT = new UpdateOptions().upsert(true);
+    private static final BulkWriteOptions UNORDERED = new BulkWriteOptions().ordered(false);
+
+    // Only fetch the fields which are actually read back.
+    private static final Bson USER_PROJECTION = Projections.include("name", "primaryGroup", "permissions", "perms");
+    private static final Bson PERMS_PROJECTION = Projections.include("permissions", "perms");
+    private static final Bson GROUPS_PROJECTION = Projections.include("groups");
+    private static final Bson ID_PROJECTION = Projections.include("_id");
+    private static final Bson NAME_PROJECTION = Projections.include("name");
+
     private final DatastoreConfiguration configuration;
     private MongoClient mongoClient;
+
+    @Getter
     private MongoDatabase database;
 
+    /**
+     * If there are still documents stored in the legacy format. Checked on startup, and set to false once the
+     * migration has completed.
+     */
+    @Setter
+    private volatile boolean legacyDocuments = true;
+
     public MongoDBBacking(LuckPermsPlugin plugin, DatastoreConfiguration configuration) {
         super(plugin, "MongoDB");
         this.configuration = configuration;
@@ -153,13 +278,38 @@ public class MongoDBBacking extends AbstractBacking {
         int port = addressSplit.length > 1 ? Integer.parseInt(addressSplit[1]) : 27017;
         ServerAddress address = new ServerAddress(host, port);
 
+        WriteConcern writeConcern = configuration.getWriteConcern() == null ? null : WriteConcern.valueOf(configuration.getWriteConcern());
+        if (writeConcern == null) {
+            plugin.getLog().warn("Unknown MongoDB write concern '" + configuration.getWriteConcern() + "', using acknowledged.");
+            writeConcern = WriteConcern.ACKNOWLEDGED;
+        }
+
+        MongoClientOptions options = MongoClientOptions.builder()
+                .connectionsPerHost(configuration.getPoolSize())
+                .writeConcern(writeConcern)
+                .build();
+
         if (credential == null) {
-            mongoClient = new MongoClient(address, Collections.emptyList());
+            mongoClient = new MongoClient(address, Collections.emptyList(), options);
         } else {
-            mongoClient = new MongoClient(address, Collections.singletonList(credential));
+            mongoClient = new MongoClient(address, Collections.singletonList(credential), options);
         }
 
         database = mongoClient.getDatabase(configuration.getDatabase());
+
+        // createIndex is a no-op if the index already exists
+        database.getCollection("users").createIndex(Indexes.ascending("permissions.key"));
+        database.getCollection("groups").createIndex(Indexes.ascending("permissions.key"));
+        database.getCollection("uuid").createIndex(Indexes.ascending("name"));
+
+        // convert any documents still in the legacy format in the background. loads and saves handle both formats
+        // in the meantime, and any document which is saved is written in the new format.
+        legacyDocuments = LegacyMongoSchemaMigration.hasLegacyDocuments(database.getCollection("users")) ||
+                LegacyMongoSchemaMigration.hasLegacyDocuments(database.getCollection("groups"));
+        if (legacyDocuments) {
+            plugin.getScheduler().doAsync(new LegacyMongoSchemaMigration(this));
+        }
+
         setAcceptingLogins(true);
     }
 
@@ -232,36 +382,31 @@ public class MongoDBBacking extends AbstractBacking {
             return call(() -> {
                 MongoCollection<Document> c = database.getCollection("users");
 
-                try (MongoCursor<Document> cursor = c.find(new Document("_id", user.getUuid())).iterator()) {
-                    if (cursor.hasNext()) {
-                        // User exists, let's load.
-                        Document d = cursor.next();
-                        user.setNodes(revert((Map<String, Boolean>) d.get("perms")).entrySet().stream()
-                                .map(e -> NodeFactory.fromSerializedNode(e.getKey(), e.getValue()))
-                                .collect(Collectors.toSet())
-                        );
-                        user.getPrimaryGroup().setStoredValue(d.getString("primaryGroup"));
-
-                        boolean save = plugin.getUserManager().giveDefaultIfNeeded(user, false);
-
-                        if (user.getName() == null || user.getName().equalsIgnoreCase("null")) {
-                            user.setName(d.getString("name"));
-                        } else {
-                            if (!d.getString("name").equalsIgnoreCase(user.getName())) {
-                                save = true;
-                            }
-                        }
+                Document d = c.find(new Document("_id", user.getUuid())).projection(USER_PROJECTION).first();
+                if (d != null) {
+                    // User exists, let's load.
+                    user.setNodes(readNodes(d));
+                    user.getPrimaryGroup().setStoredValue(d.getString("primaryGroup"));
 
-                        if (save) {
-                            c.replaceOne(new Document("_id", user.getUuid()), fromUser(user));
-                        }
+                    boolean save = plugin.getUserManager().giveDefaultIfNeeded(user, false);
+
+                    if (user.getName() == null || user.getName().equalsIgnoreCase("null")) {
+                        user.setName(d.getString("name"));
                     } else {
-                        if (GenericUserManager.shouldSave(user)) {
-                            user.clearNodes();
-                            user.getPrimaryGroup().setStoredValue(null);
-                            plugin.getUserManager().giveDefaultIfNeeded(user, false);
+                        if (!d.getString("name").equalsIgnoreCase(user.getName())) {
+                            save = true;
                         }
                     }
+
+                    if (save) {
+                        c.replaceOne(new Document("_id", user.getUuid()), fromUser(user), UPSERT);
+                    }
+                } else {
+                    if (GenericUserManager.shouldSave(user)) {
+                        user.clearNodes();
+                        user.getPrimaryGroup().setStoredValue(null);
+                        plugin.getUserManager().giveDefaultIfNeeded(user, false);
+                    }
                 }
                 return true;
             }, false);
@@ -278,7 +423,8 @@ public class MongoDBBacking extends AbstractBacking {
             try {
                 return call(() -> {
                     MongoCollection<Document> c = database.getCollection("users");
-                    return c.deleteOne(new Document("_id", user.getUuid())).wasAcknowledged();
+                    c.deleteOne(new Document("_id", user.getUuid()));
+                    return true;
                 }, false);
             } finally {
                 user.getIoLock().unlock();
@@ -289,13 +435,7 @@ public class MongoDBBacking extends AbstractBacking {
         try {
             return call(() -> {
                 MongoCollection<Document> c = database.getCollection("users");
-                try (MongoCursor<Document> cursor = c.find(new Document("_id", user.getUuid())).iterator()) {
-                    if (!cursor.hasNext()) {
-                        c.insertOne(fromUser(user));
-                    } else {
-                        c.replaceOne(new Document("_id", user.getUuid()), fromUser(user));
-                    }
-                }
+                c.replaceOne(new Document("_id", user.getUuid()), fromUser(user), UPSERT);
                 return true;
             }, false);
         } finally {
@@ -303,6 +443,28 @@ public class MongoDBBacking extends AbstractBacking {
         }
     }
 
+    @Override
+    public Set<User> saveUsers(Collection<User> users) {
+        // Hold every user's lock until the write has gone through, so a newer save can't be overwritten by this batch.
+        // The locks are taken in a fixed order to avoid deadlocking with another batch.
+        List<User> sorted = users.stream().sorted(Comparator.comparing(User::getUuid)).collect(Collectors.toList());
+        sorted.forEach(u -> u.getIoLock().lock());
+        try {
+            List<WriteModel<Document>> writes = new ArrayList<>(sorted.size());
+            for (User user : sorted) {
+                if (!GenericUserManager.shouldSave(user)) {
+                    writes.add(new DeleteOneModel<>(new Document("_id", user.getUuid())));
+                } else {
+                    writes.add(new ReplaceOneModel<>(new Document("_id", user.getUuid()), fromUser(user), UPSERT));
+                }
+            }
+
+            return bulkWrite("users", sorted, writes);
+        } finally {
+            sorted.forEach(u -> u.getIoLock().unlock());
+        }
+    }
+
     @Override
     public boolean cleanupUsers() {
         return true; // TODO
@@ -314,10 +476,10 @@ public class MongoDBBacking extends AbstractBacking {
         boolean success = call(() -> {
             MongoCollection<Document> c = database.getCollection("users");
 
-            try (MongoCursor<Document> cursor = c.find().iterator()) {
+            try (MongoCursor<Document> cursor = c.find().projection(ID_PROJECTION).iterator()) {
                 while (cursor.hasNext()) {
                     Document d = cursor.next();
-                    uuids.add(UUID.fromString(d.getString("_id")));
+                    uuids.add(d.get("_id", UUID.class));
                 }
             }
 
@@ -333,20 +495,22 @@ public class MongoDBBacking extends AbstractBacking {
         boolean success = call(() -> {
             MongoCollection<Document> c = database.getCollection("users");
 
-            try (MongoCursor<Document> cursor = c.find().iterator()) {
+            String key = permission.toLowerCase();
+            Bson query = Filters.eq("permissions.key", key);
+            if (legacyDocuments) {
+                // documents which haven't been migrated yet can't be matched by the index
+                query = Filters.or(query, Filters.exists("perms"));
+            }
+
+            try (MongoCursor<Document> cursor = c.find(query).projection(PERMS_PROJECTION).iterator()) {
                 while (cursor.hasNext()) {
                     Document d = cursor.next();
 
                     UUID holder = d.get("_id", UUID.class);
-                    Map<String, Boolean> perms = revert((Map<String, Boolean>) d.get("perms"));
-
-                    for (Map.Entry<String, Boolean> e : perms.entrySet()) {
-                        Node node = NodeFactory.fromSerializedNode(e.getKey(), e.getValue());
-                        if (!node.getPermission().equalsIgnoreCase(permission)) {
-                            continue;
+                    for (NodeModel node : deserializePermissions(d)) {
+                        if (node.getPermission().equalsIgnoreCase(permission)) {
+                            held.add(NodeHeldPermission.of(holder, node));
                         }
-
-                        held.add(NodeHeldPermission.of(holder, node));
                     }
                 }
             }
@@ -364,18 +528,16 @@ public class MongoDBBacking extends AbstractBacking {
             return call(() -> {
                 MongoCollection<Document> c = database.getCollection("groups");
 
-                try (MongoCursor<Document> cursor = c.find(new Document("_id", group.getName())).iterator()) {
-                    if (cursor.hasNext()) {
-                        // Group exists, let's load.
-                        Document d = cursor.next();
-                        group.setNodes(revert((Map<String, Boolean>) d.get("perms")).entrySet().stream()
-                                .map(e -> NodeFactory.fromSerializedNode(e.getKey(), e.getValue()))
-                                .collect(Collectors.toSet())
-                        );
-                    } else {
-                        c.insertOne(fromGroup(group));
-                    }
-                }
+                // Insert the group if it doesn't exist, and read back whatever is stored, in one round trip.
+                Document insert = fromGroup(group);
+                insert.remove("_id");
+                Document d = c.findOneAndUpdate(
+                        new Document("_id", group.getName()),
+                        new Document("$setOnInsert", insert),
+                        new FindOneAndUpdateOptions().upsert(true).returnDocument(ReturnDocument.AFTER).projection(PERMS_PROJECTION)
+                );
+
+                group.setNodes(readNodes(d));
                 return true;
             }, false);
         } finally {
@@ -391,18 +553,13 @@ public class MongoDBBacking extends AbstractBacking {
             return call(() -> {
                 MongoCollection<Document> c = database.getCollection("groups");
 
-                try (MongoCursor<Document> cursor = c.find(new Document("_id", group.getName())).iterator()) {
-                    if (cursor.hasNext()) {
-                        Document d = cursor.next();
-
-                        group.setNodes(revert((Map<String, Boolean>) d.get("perms")).entrySet().stream()
-                                .map(e -> NodeFactory.fromSerializedNode(e.getKey(), e.getValue()))
-                                .collect(Collectors.toSet())
-                        );
-                        return true;
-                    }
+                Document d = c.find(new Document("_id", group.getName())).projection(PERMS_PROJECTION).first();
+                if (d == null) {
                     return false;
                 }
+
+                group.setNodes(readNodes(d));
+                return true;
             }, false);
         } finally {
             group.getIoLock().unlock();
@@ -411,27 +568,26 @@ public class MongoDBBacking extends AbstractBacking {
 
     @Override
     public boolean loadAllGroups() {
-        List<String> groups = new ArrayList<>();
+        // read every group document in a single pass, rather than querying each group separately
+        Map<String, Set<Node>> groups = new HashMap<>();
         boolean success = call(() -> {
             MongoCollection<Document> c = database.getCollection("groups");
 
-            boolean b = true;
-            try (MongoCursor<Document> cursor = c.find().iterator()) {
+            try (MongoCursor<Document> cursor = c.find().projection(PERMS_PROJECTION).iterator()) {
                 while (cursor.hasNext()) {
-                    String name = cursor.next().getString("_id");
-                    if (!loadGroup(name)) {
-                        b = false;
-                    }
-                    groups.add(name);
+                    Document d = cursor.next();
+                    groups.put(d.getString("_id"), readNodes(d));
                 }
             }
-            return b;
+            return true;
         }, false);
 
         if (success) {
+            applyGroupNodes(groups);
+
             GroupManager gm = plugin.getGroupManager();
             gm.getAll().values().stream()
-                    .filter(g -> !groups.contains(g.getName()))
+                    .filter(g -> !groups.containsKey(g.getName()))
                     .forEach(gm::unload);
         }
         return success;
@@ -443,13 +599,30 @@ public class MongoDBBacking extends AbstractBacking {
         try {
             return call(() -> {
                 MongoCollection<Document> c = database.getCollection("groups");
-                return c.replaceOne(new Document("_id", group.getName()), fromGroup(group)).wasAcknowledged();
+                c.replaceOne(new Document("_id", group.getName()), fromGroup(group), UPSERT);
+                return true;
             }, false);
         } finally {
             group.getIoLock().unlock();
         }
     }
 
+    @Override
+    public Set<Group> saveGroups(Collection<Group> groups) {
+        List<Group> sorted = groups.stream().sorted(Comparator.comparing(Group::getName)).collect(Collectors.toList());
+        sorted.forEach(g -> g.getIoLock().lock());
+        try {
+            List<WriteModel<Document>> writes = new ArrayList<>(sorted.size());
+            for (Group group : sorted) {
+                writes.add(new ReplaceOneModel<>(new Document("_id", group.getName()), fromGroup(group), UPSERT));
+            }
+
+            return bulkWrite("groups", sorted, writes);
+        } finally {
+            sorted.forEach(g -> g.getIoLock().unlock());
+        }
+    }
+
     @Override
     public boolean deleteGroup(Group group) {
         group.getIoLock().lock();
@@ -457,7 +630,8 @@ public class MongoDBBacking extends AbstractBacking {
         try {
             success = call(() -> {
                 MongoCollection<Document> c = database.getCollection("groups");
-                return c.deleteOne(new Document("_id", group.getName())).wasAcknowledged();
+                c.deleteOne(new Document("_id", group.getName()));
+                return true;
             }, false);
         } finally {
             group.getIoLock().unlock();
@@ -473,20 +647,22 @@ public class MongoDBBacking extends AbstractBacking {
         boolean success = call(() -> {
             MongoCollection<Document> c = database.getCollection("groups");
 
-            try (MongoCursor<Document> cursor = c.find().iterator()) {
+            String key = permission.toLowerCase();
+            Bson query = Filters.eq("permissions.key", key);
+            if (legacyDocuments) {
+                // documents which haven't been migrated yet can't be matched by the index
+                query = Filters.or(query, Filters.exists("perms"));
+            }
+
+            try (MongoCursor<Document> cursor = c.find(query).projection(PERMS_PROJECTION).iterator()) {
                 while (cursor.hasNext()) {
                     Document d = cursor.next();
 
                     String holder = d.getString("_id");
-                    Map<String, Boolean> perms = revert((Map<String, Boolean>) d.get("perms"));
-
-                    for (Map.Entry<String, Boolean> e : perms.entrySet()) {
-                        Node node = NodeFactory.fromSerializedNode(e.getKey(), e.getValue());
-                        if (!node.getPermission().equalsIgnoreCase(permission)) {
-                            continue;
+                    for (NodeModel node : deserializePermissions(d)) {
+                        if (node.getPermission().equalsIgnoreCase(permission)) {
+                            held.add(NodeHeldPermission.of(holder, node));
                         }
-
-                        held.add(NodeHeldPermission.of(holder, node));
                     }
                 }
             }
@@ -504,14 +680,15 @@ public class MongoDBBacking extends AbstractBacking {
             return call(() -> {
                 MongoCollection<Document> c = database.getCollection("tracks");
 
-                try (MongoCursor<Document> cursor = c.find(new Document("_id", track.getName())).iterator()) {
-                    if (!cursor.hasNext()) {
-                        c.insertOne(fromTrack(track));
-                    } else {
-                        Document d = cursor.next();
-                        track.setGroups((List<String>) d.get("groups"));
-                    }
-                }
+                Document insert = fromTrack(track);
+                insert.remove("_id");
+                Document d = c.findOneAndUpdate(
+                        new Document("_id", track.getName()),
+                        new Document("$setOnInsert", insert),
+                        new FindOneAndUpdateOptions().upsert(true).returnDocument(ReturnDocument.AFTER).projection(GROUPS_PROJECTION)
+                );
+
+                track.setGroups((List<String>) d.get("groups"));
                 return true;
             }, false);
         } finally {
@@ -527,14 +704,13 @@ public class MongoDBBacking extends AbstractBacking {
             return call(() -> {
                 MongoCollection<Document> c = database.getCollection("tracks");
 
-                try (MongoCursor<Document> cursor = c.find(new Document("_id", track.getName())).iterator()) {
-                    if (cursor.hasNext()) {
-                        Document d = cursor.next();
-                        track.setGroups((List<String>) d.get("groups"));
-                        return true;
-                    }
+                Document d = c.find(new Document("_id", track.getName())).projection(GROUPS_PROJECTION).first();
+                if (d == null) {
                     return false;
                 }
+
+                track.setGroups((List<String>) d.get("groups"));
+                return true;
             }, false);
         } finally {
             track.getIoLock().unlock();
@@ -543,27 +719,33 @@ public class MongoDBBacking extends AbstractBacking {
 
     @Override
     public boolean loadAllTracks() {
-        List<String> tracks = new ArrayList<>();
+        Map<String, List<String>> tracks = new HashMap<>();
         boolean success = call(() -> {
             MongoCollection<Document> c = database.getCollection("tracks");
 
-            boolean b = true;
-            try (MongoCursor<Document> cursor = c.find().iterator()) {
+            try (MongoCursor<Document> cursor = c.find().projection(GROUPS_PROJECTION).iterator()) {
                 while (cursor.hasNext()) {
-                    String name = cursor.next().getString("_id");
-                    if (!loadTrack(name)) {
-                        b = false;
-                    }
-                    tracks.add(name);
+                    Document d = cursor.next();
+                    tracks.put(d.getString("_id"), (List<String>) d.get("groups"));
                 }
             }
-            return b;
+            return true;
         }, false);
 
         if (success) {
+            for (Map.Entry<String, List<String>> e : tracks.entrySet()) {
+                Track track = plugin.getTrackManager().getOrMake(e.getKey());
+                track.getIoLock().lock();
+                try {
+                    track.setGroups(e.getValue());
+                } finally {
+                    track.getIoLock().unlock();
+                }
+            }
+
             TrackManager tm = plugin.getTrackManager();
             tm.getAll().values().stream()
-                    .filter(t -> !tracks.contains(t.getName()))
+                    .filter(t -> !tracks.containsKey(t.getName()))
                     .forEach(tm::unload);
         }
         return success;
@@ -575,7 +757,8 @@ public class MongoDBBacking extends AbstractBacking {
         try {
             return call(() -> {
                 MongoCollection<Document> c = database.getCollection("tracks");
-                return c.replaceOne(new Document("_id", track.getName()), fromTrack(track)).wasAcknowledged();
+                c.replaceOne(new Document("_id", track.getName()), fromTrack(track), UPSERT);
+                return true;
             }, false);
         } finally {
             track.getIoLock().unlock();
@@ -589,7 +772,8 @@ public class MongoDBBacking extends AbstractBacking {
         try {
             success = call(() -> {
                 MongoCollection<Document> c = database.getCollection("tracks");
-                return c.deleteOne(new Document("_id", track.getName())).wasAcknowledged();
+                c.deleteOne(new Document("_id", track.getName()));
+                return true;
             }, false);
         } finally {
             track.getIoLock().unlock();
@@ -603,15 +787,7 @@ public class MongoDBBacking extends AbstractBacking {
     public boolean saveUUIDData(String username, UUID uuid) {
         return call(() -> {
             MongoCollection<Document> c = database.getCollection("uuid");
-
-            try (MongoCursor<Document> cursor = c.find(new Document("_id", uuid)).iterator()) {
-                if (cursor.hasNext()) {
-                    c.replaceOne(new Document("_id", uuid), new Document("_id", uuid).append("name", username.toLowerCase()));
-                } else {
-                    c.insertOne(new Document("_id", uuid).append("name", username.toLowerCase()));
-                }
-            }
-
+            c.replaceOne(new Document("_id", uuid), new Document("_id", uuid).append("name", username.toLowerCase()), UPSERT);
             return true;
         }, false);
     }
@@ -621,12 +797,8 @@ public class MongoDBBacking extends AbstractBacking {
         return call(() -> {
             MongoCollection<Document> c = database.getCollection("uuid");
 
-            try (MongoCursor<Document> cursor = c.find(new Document("name", username.toLowerCase())).iterator()) {
-                if (cursor.hasNext()) {
-                    return cursor.next().get("_id", UUID.class);
-                }
-            }
-            return null;
+            Document d = c.find(new Document("name", username.toLowerCase())).projection(ID_PROJECTION).first();
+            return d == null ? null : d.get("_id", UUID.class);
         }, null);
     }
 
@@ -635,20 +807,8 @@ public class MongoDBBacking extends AbstractBacking {
         return call(() -> {
             MongoCollection<Document> c = database.getCollection("uuid");
 
-            try (MongoCursor<Document> cursor = c.find(new Document("_id", uuid)).iterator()) {
-                if (cursor.hasNext()) {
-                    return cursor.next().get("name", String.class);
-                }
-            }
-            return null;
+            Document d = c.find(new Document("_id", uuid)).projection(NAME_PROJECTION).first();
+            return d == null ? null : d.getString("name");
         }, null);
     }
-
-    public static Map<String, Boolean> exportToLegacy(Iterable<Node> nodes) {
-        Map<String, Boolean> m = new HashMap<>();
-        for (Node node : nodes) {
-            m.put(node.toSerializedNode(), node.getValue());
-        }
-        return m;
-    }
 }
@@ -26,6 +26,7 @@ import lombok.Getter;
 
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Maps;
+import com.google.common.hash.Hashing;
 import com.google.gson.Gson;
 import com.google.gson.reflect.TypeToken;
 
@@ -43,7 +44,9 @@ import me.lucko.luckperms.common.managers.TrackManager;
 import me.lucko.luckperms.common.managers.impl.GenericUserManager;
 import me.lucko.luckperms.common.plugin.LuckPermsPlugin;
 import me.lucko.luckperms.common.storage.backing.sqlprovider.SQLProvider;
+import me.lucko.luckperms.common.storage.backing.sqlprovider.SQLProvider.Pool;
 import me.lucko.luckperms.common.storage.backing.utils.LegacySQLSchemaMigration;
+import me.lucko.luckperms.common.storage.backing.utils.SQLSchemaV2Migration;
 import me.lucko.luckperms.common.storage.holder.NodeHeldPermission;
 
 import java.io.BufferedReader;
@@ -57,11 +60,17 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Function;
@@ -71,13 +80,14 @@ public class SQLBacking extends AbstractBacking {
     private static final Type LIST_STRING_TYPE = new TypeToken<List<String>>(){}.getType();
 
     private static final String USER_PERMISSIONS_SELECT = "SELECT permission, value, server, world, expiry, contexts FROM {prefix}user_permissions WHERE uuid=?";
-    private static final String USER_PERMISSIONS_DELETE_SPECIFIC = "DELETE FROM {prefix}user_permissions WHERE uuid=? AND permission=? AND value=? AND server=? AND world=? AND expiry=? AND contexts=?";
+    private static final String USER_PERMISSIONS_DELETE_SPECIFIC = "DELETE FROM {prefix}user_permissions WHERE uuid=? AND permission=? AND value=? AND server=? AND world=? AND expiry=? AND contexts=? AND context_key=?";
     private static final String USER_PERMISSIONS_DELETE = "DELETE FROM {prefix}user_permissions WHERE uuid=?";
-    private static final String USER_PERMISSIONS_INSERT = "INSERT INTO {prefix}user_permissions(uuid, permission, value, server, world, expiry, contexts) VALUES(?, ?, ?, ?, ?, ?, ?)";
+    private static final String USER_PERMISSIONS_INSERT = "INSERT INTO {prefix}user_permissions(uuid, permission, value, server, world, expiry, contexts, context_key) VALUES(?, ?, ?, ?, ?, ?, ?, ?)";
     private static final String USER_PERMISSIONS_SELECT_DISTINCT = "SELECT DISTINCT uuid FROM {prefix}user_permissions";
     private static final String USER_PERMISSIONS_SELECT_PERMISSION = "SELECT uuid, value, server, world, expiry, contexts FROM {prefix}user_permissions WHERE permission=?";
 
-    private static final String PLAYER_SELECT = "SELECT username, primary_group FROM {prefix}players WHERE uuid=?";
+    private static final String PLAYER_SELECT_WITH_PERMISSIONS = "SELECT username, primary_group, NULL AS permission, NULL AS value, NULL AS server, NULL AS world, NULL AS expiry, NULL AS contexts FROM {prefix}players WHERE uuid=? " +
+            "UNION ALL SELECT NULL, NULL, permission, value, server, world, expiry, contexts FROM {prefix}user_permissions WHERE uuid=?";
     private static final String PLAYER_SELECT_UUID = "SELECT uuid FROM {prefix}players WHERE username=? LIMIT 1";
     private static final String PLAYER_SELECT_USERNAME = "SELECT username FROM {prefix}players WHERE uuid=? LIMIT 1";
     private static final String PLAYER_INSERT = "INSERT INTO {prefix}players VALUES(?, ?, ?)";
@@ -87,9 +97,10 @@ public class SQLBacking extends AbstractBacking {
 
     private static final String GROUP_PERMISSIONS_SELECT = "SELECT permission, value, server, world, expiry, contexts FROM {prefix}group_permissions WHERE name=?";
     private static final String GROUP_PERMISSIONS_DELETE = "DELETE FROM {prefix}group_permissions WHERE name=?";
-    private static final String GROUP_PERMISSIONS_DELETE_SPECIFIC = "DELETE FROM {prefix}group_permissions WHERE name=? AND permission=? AND value=? AND server=? AND world=? AND expiry=? AND contexts=?";
-    private static final String GROUP_PERMISSIONS_INSERT = "INSERT INTO {prefix}group_permissions(name, permission, value, server, world, expiry, contexts) VALUES(?, ?, ?, ?, ?, ?, ?)";
+    private static final String GROUP_PERMISSIONS_DELETE_SPECIFIC = "DELETE FROM {prefix}group_permissions WHERE name=? AND permission=? AND value=? AND server=? AND world=? AND expiry=? AND contexts=? AND context_key=?";
+    private static final String GROUP_PERMISSIONS_INSERT = "INSERT INTO {prefix}group_permissions(name, permission, value, server, world, expiry, contexts, context_key) VALUES(?, ?, ?, ?, ?, ?, ?, ?)";
     private static final String GROUP_PERMISSIONS_SELECT_PERMISSION = "SELECT name, value, server, world, expiry, contexts FROM {prefix}group_permissions WHERE permission=?";
+    private static final String GROUP_PERMISSIONS_SELECT_ALL = "SELECT name, permission, value, server, world, expiry, contexts FROM {prefix}group_permissions";
 
     private static final String GROUP_SELECT_ALL = "SELECT name FROM {prefix}groups";
     private static final String GROUP_INSERT = "INSERT INTO {prefix}groups VALUES(?)";
@@ -113,14 +124,64 @@ public class SQLBacking extends AbstractBacking {
     @Getter
     private final Function<String, String> prefix;
 
+    // statements with the table prefix already applied, keyed by their template
+    private final Map<String, String> prefixed = new ConcurrentHashMap<>();
+
+    // set while user data is still being moved to the v2 schema
+    private volatile SQLSchemaV2Migration migration = null;
+
     public SQLBacking(LuckPermsPlugin plugin, SQLProvider provider, String prefix) {
         super(plugin, provider.getName());
         this.provider = provider;
-        this.prefix = s -> s.replace("{prefix}", prefix);
+        this.prefix = s -> {
+            String statement = prefixed.get(s);
+            if (statement == null) {
+                statement = s.replace("{prefix}", prefix);
+                prefixed.put(s, statement);
+            }
+            return statement;
+        };
         gson = new Gson();
     }
 
-    private boolean tableExists(String table) throws SQLException {
+    /**
+     * Gets a fixed length key identifying the server, world and extra contexts of a node.
+     *
+     * <p>Stored alongside each row so that rows can be located through a narrow composite index, rather than
+     * by matching every column.</p>
+     *
+     * @param node the node
+     * @return the context key
+     */
+    public static String contextKey(NodeModel node) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(node.getServer()).append('\0').append(node.getWorld());
+
+        // sort the contexts, so that the key doesn't depend on their order
+        node.getContexts().toSet().stream()
+                .map(e -> e.getKey() + "=" + e.getValue())
+                .sorted()
+                .forEach(s -> sb.append('\0').append(s));
+
+        return Hashing.murmur3_128().hashString(sb.toString(), StandardCharsets.UTF_8).toString();
+    }
+
+    /**
+     * Makes sure a user's permissions have been moved to the v2 table, if an upgrade is still in progress.
+     *
+     * <p>Must be called before the user's permissions are read or written, outside of any transaction.</p>
+     *
+     * @param uuid the user's uuid
+     * @throws SQLException if the user's permissions could not be moved
+     */
+    private void migrateUser(UUID uuid) throws SQLException {
+        SQLSchemaV2Migration migration = this.migration;
+        if (migration != null) {
+            migration.migrateUser(uuid.toString());
+        }
+    }
+
+    public boolean tableExists(String table) throws SQLException {
         try (Connection connection = provider.getConnection()) {
             try (ResultSet rs = connection.getMetaData().getTables(null, null, "%", null)) {
                 while (rs.next()) {
@@ -133,45 +194,64 @@ public class SQLBacking extends AbstractBacking {
         }
     }
 
-    @Override
-    public void init() {
-        try {
-            provider.init();
-
-            // Init tables
-            if (!tableExists(prefix.apply("{prefix}user_permissions"))) {
-                String schemaFileName = "lp-schema-" + provider.getName().toLowerCase() + ".sql";
-                try (InputStream is = plugin.getResourceStream(schemaFileName)) {
-                    if (is == null) {
-                        throw new Exception("Couldn't locate schema file for " + provider.getName());
-                    }
+    /**
+     * Reads the statements from the schema file for this provider.
+     *
+     * @return the schema statements, with the table prefix applied
+     * @throws Exception if the schema file could not be read
+     */
+    public List<String> getSchema() throws Exception {
+        String schemaFileName = "lp-schema-" + provider.getName().toLowerCase() + ".sql";
+        try (InputStream is = plugin.getResourceStream(schemaFileName)) {
+            if (is == null) {
+                throw new Exception("Couldn't locate schema file for " + provider.getName());
+            }
 
-                    try (BufferedReader reader = new BufferedReader(new InputStreamReader(is, StandardCharsets.UTF_8))) {
-                        try (Connection connection = provider.getConnection()) {
-                            try (Statement s = connection.createStatement()) {
-                                StringBuilder sb = new StringBuilder();
-                                String line;
-                                while ((line = reader.readLine()) != null) {
-                                    if (line.startsWith("--") || line.startsWith("#")) continue;
+            List<String> statements = new ArrayList<>();
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(is, StandardCharsets.UTF_8))) {
+                StringBuilder sb = new StringBuilder();
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (line.startsWith("--") || line.startsWith("#")) continue;
 
-                                    sb.append(line);
+                    sb.append(line);
 
-                                    // check for end of declaration
-                                    if (line.endsWith(";")) {
-                                        sb.deleteCharAt(sb.length() - 1);
+                    // check for end of declaration
+                    if (line.endsWith(";")) {
+                        sb.deleteCharAt(sb.length() - 1);
 
-                                        String result = prefix.apply(sb.toString().trim());
-                                        if (!result.isEmpty()) s.addBatch(result);
+                        String result = prefix.apply(sb.toString().trim());
+                        if (!result.isEmpty()) statements.add(result);
 
-                                        // reset
-                                        sb = new StringBuilder();
-                                    }
-                                }
-                                s.executeBatch();
-                            }
-                        }
+                        // reset
+                        sb = new StringBuilder();
                     }
                 }
+            }
+            return statements;
+        }
+    }
+
+    public void executeStatements(List<String> statements) throws SQLException {
+        try (Connection connection = provider.getConnection()) {
+            try (Statement s = connection.createStatement()) {
+                for (String statement : statements) {
+                    s.addBatch(statement);
+                }
+                s.executeBatch();
+            }
+        }
+    }
+
+    @Override
+    public void init() {
+        try {
+            provider.init();
+
+            // Init tables
+            boolean upgrading = tableExists(prefix.apply("{prefix}user_permissions" + SQLSchemaV2Migration.OLD_TABLE_SUFFIX));
+            if (!upgrading && !tableExists(prefix.apply("{prefix}user_permissions"))) {
+                executeStatements(getSchema());
 
                 // Try migration from legacy backing
                 if (tableExists("lp_users")) {
@@ -181,9 +261,20 @@ public class SQLBacking extends AbstractBacking {
 
                     new LegacySQLSchemaMigration(this).run();
                 }
+            } else if (!tableExists(prefix.apply("{prefix}schema_version"))) {
+                plugin.getLog().warn("===== SQL Schema Upgrade =====");
+                plugin.getLog().warn("Upgrading the permission tables to the v2 schema.");
+                plugin.getLog().warn("User data will be moved across in the background. Players can join while this happens.");
+
+                migration = new SQLSchemaV2Migration(this);
+                migration.prepare();
             }
 
             setAcceptingLogins(true);
+
+            if (migration != null) {
+                migration.start();
+            }
         } catch (Exception e) {
             e.printStackTrace();
             plugin.getLog().severe("Error occurred whilst initialising the database.");
@@ -193,6 +284,10 @@ public class SQLBacking extends AbstractBacking {
 
     @Override
     public void shutdown() {
+        if (migration != null) {
+            migration.stop();
+        }
+
         try {
             provider.shutdown();
         } catch (Exception e) {
@@ -200,6 +295,11 @@ public class SQLBacking extends AbstractBacking {
         }
     }
 
+    @Override
+    public Map<String, String> getMeta() {
+        return provider.getMeta();
+    }
+
     @Override
     public boolean logAction(LogEntry entry) {
         try (Connection c = provider.getConnection()) {
@@ -223,7 +323,7 @@ public class SQLBacking extends AbstractBacking {
     @Override
     public Log getLog() {
         final Log.Builder log = Log.builder();
-        try (Connection c = provider.getConnection()) {
+        try (Connection c = provider.getConnection(Pool.BULK)) {
             try (PreparedStatement ps = c.prepareStatement(prefix.apply(ACTION_SELECT_ALL))) {
                 try (ResultSet rs = ps.executeQuery()) {
                     while (rs.next()) {
@@ -257,14 +357,29 @@ public class SQLBacking extends AbstractBacking {
             AtomicReference<String> primaryGroup = new AtomicReference<>(null);
             AtomicReference<String> userName = new AtomicReference<>(null);
 
-            // Collect user permissions
-            try (Connection c = provider.getConnection()) {
-                try (PreparedStatement ps = c.prepareStatement(prefix.apply(USER_PERMISSIONS_SELECT))) {
+            // Collect user meta (username & primary group) and permissions in a single round trip.
+            // The players row is the only one without a permission.
+            try {
+                migrateUser(user.getUuid());
+            } catch (SQLException e) {
+                e.printStackTrace();
+                return false;
+            }
+
+            try (Connection c = provider.getConnection(Pool.LOGIN)) {
+                try (PreparedStatement ps = c.prepareStatement(prefix.apply(PLAYER_SELECT_WITH_PERMISSIONS))) {
                     ps.setString(1, user.getUuid().toString());
+                    ps.setString(2, user.getUuid().toString());
 
                     try (ResultSet rs = ps.executeQuery()) {
                         while (rs.next()) {
                             String permission = rs.getString("permission");
+                            if (permission == null) {
+                                userName.set(rs.getString("username"));
+                                primaryGroup.set(rs.getString("primary_group"));
+                                continue;
+                            }
+
                             boolean value = rs.getBoolean("value");
                             String server = rs.getString("server");
                             String world = rs.getString("world");
@@ -279,23 +394,6 @@ public class SQLBacking extends AbstractBacking {
                 return false;
             }
 
-            // Collect user meta (username & primary group)
-            try (Connection c = provider.getConnection()) {
-                try (PreparedStatement ps = c.prepareStatement(prefix.apply(PLAYER_SELECT))) {
-                    ps.setString(1, user.getUuid().toString());
-
-                    try (ResultSet rs = ps.executeQuery()) {
-                        if (rs.next()) {
-                            userName.set(rs.getString("username"));
-                            primaryGroup.set(rs.getString("primary_group"));
-                        }
-                    }
-                }
-            } catch (SQLException e) {
-                e.printStackTrace();
-                return false;
-            }
-
             // update username & primary group
             String pg = primaryGroup.get();
             if (pg == null) {
@@ -344,110 +442,136 @@ public class SQLBacking extends AbstractBacking {
     public boolean saveUser(User user) {
         user.getIoLock().lock();
         try {
-            // Empty data - just delete from the DB.
-            if (!GenericUserManager.shouldSave(user)) {
-                try (Connection c = provider.getConnection()) {
-                    try (PreparedStatement ps = c.prepareStatement(prefix.apply(USER_PERMISSIONS_DELETE))) {
-                        ps.setString(1, user.getUuid().toString());
-                        ps.execute();
-                    }
-                    try (PreparedStatement ps = c.prepareStatement(prefix.apply(PLAYER_UPDATE_PRIMARY_GROUP))) {
-                        ps.setString(1, "default");
-                        ps.setString(2, user.getUuid().toString());
-                        ps.execute();
-                    }
-                } catch (SQLException e) {
-                    e.printStackTrace();
-                    return false;
+            migrateUser(user.getUuid());
+            return provider.transaction(c -> {
+                saveUser(c, user);
+                return true;
+            });
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return false;
+        } finally {
+            user.getIoLock().unlock();
+        }
+    }
+
+    @Override
+    public Set<User> saveUsers(Collection<User> users) {
+        // Lock every user before starting, so the locks are always taken before the connection.
+        List<User> sorted = users.stream().sorted(Comparator.comparing(User::getUuid)).collect(Collectors.toList());
+        sorted.forEach(u -> u.getIoLock().lock());
+        try {
+            for (User user : sorted) {
+                migrateUser(user.getUuid());
+            }
+
+            // One transaction for the whole batch, so a flush of the output buffer only has to commit once.
+            provider.transaction(c -> {
+                for (User user : sorted) {
+                    saveUser(c, user);
                 }
                 return true;
+            });
+            return Collections.emptySet();
+        } catch (SQLException e) {
+            e.printStackTrace();
+        } finally {
+            sorted.forEach(u -> u.getIoLock().unlock());
+        }
+
+        // Fall back to saving them one by one, so that a single bad user doesn't hold back the rest.
+        return super.saveUsers(users);
+    }
+
+    private void saveUser(Connection c, User user) throws SQLException {
+        // Empty data - just delete from the DB.
+        if (!GenericUserManager.shouldSave(user)) {
+            try (PreparedStatement ps = c.prepareStatement(prefix.apply(USER_PERMISSIONS_DELETE))) {
+                ps.setString(1, user.getUuid().toString());
+                ps.execute();
             }
+            savePrimaryGroup(c, user, "default");
+            return;
+        }
 
-            // Get a snapshot of current data.
-            Set<NodeModel> remote = new HashSet<>();
-            try (Connection c = provider.getConnection()) {
-                try (PreparedStatement ps = c.prepareStatement(prefix.apply(USER_PERMISSIONS_SELECT))) {
-                    ps.setString(1, user.getUuid().toString());
+        // Get a snapshot of current data.
+        Set<NodeModel> remote = new HashSet<>();
+        try (PreparedStatement ps = c.prepareStatement(prefix.apply(USER_PERMISSIONS_SELECT))) {
+            ps.setString(1, user.getUuid().toString());
 
-                    try (ResultSet rs = ps.executeQuery()) {
-                        while (rs.next()) {
-                            String permission = rs.getString("permission");
-                            boolean value = rs.getBoolean("value");
-                            String server = rs.getString("server");
-                            String world = rs.getString("world");
-                            long expiry = rs.getLong("expiry");
-                            String contexts = rs.getString("contexts");
-                            remote.add(NodeModel.deserialize(permission, value, server, world, expiry, contexts));
-                        }
-                    }
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    String permission = rs.getString("permission");
+                    boolean value = rs.getBoolean("value");
+                    String server = rs.getString("server");
+                    String world = rs.getString("world");
+                    long expiry = rs.getLong("expiry");
+                    String contexts = rs.getString("contexts");
+                    remote.add(NodeModel.deserialize(permission, value, server, world, expiry, contexts));
                 }
-            } catch (SQLException e) {
-                return false;
             }
+        }
 
-            Set<NodeModel> local = user.getNodes().values().stream().map(NodeModel::fromNode).collect(Collectors.toSet());
+        Set<NodeModel> local = user.getNodes().values().stream().map(NodeModel::fromNode).collect(Collectors.toSet());
 
-            Map.Entry<Set<NodeModel>, Set<NodeModel>> diff = compareSets(local, remote);
+        Map.Entry<Set<NodeModel>, Set<NodeModel>> diff = compareSets(local, remote);
 
-            Set<NodeModel> toAdd = diff.getKey();
-            Set<NodeModel> toRemove = diff.getValue();
+        Set<NodeModel> toAdd = diff.getKey();
+        Set<NodeModel> toRemove = diff.getValue();
 
-            if (!toRemove.isEmpty()) {
-                try (Connection c = provider.getConnection()) {
-                    try (PreparedStatement ps = c.prepareStatement(prefix.apply(USER_PERMISSIONS_DELETE_SPECIFIC))) {
-                        for (NodeModel nd : toRemove) {
-                            ps.setString(1, user.getUuid().toString());
-                            ps.setString(2, nd.getPermission());
-                            ps.setBoolean(3, nd.isValue());
-                            ps.setString(4, nd.getServer());
-                            ps.setString(5, nd.getWorld());
-                            ps.setLong(6, nd.getExpiry());
-                            ps.setString(7, nd.serializeContext());
-                            ps.addBatch();
-                        }
-                        ps.executeBatch();
-                    }
-                } catch (SQLException e) {
-                    e.printStackTrace();
-                    return false;
+        if (!toRemove.isEmpty()) {
+            try (PreparedStatement ps = c.prepareStatement(prefix.apply(USER_PERMISSIONS_DELETE_SPECIFIC))) {
+                for (NodeModel nd : toRemove) {
+                    ps.setString(1, user.getUuid().toString());
+                    ps.setString(2, nd.getPermission());
+                    ps.setBoolean(3, nd.isValue());
+                    ps.setString(4, nd.getServer());
+                    ps.setString(5, nd.getWorld());
+                    ps.setLong(6, nd.getExpiry());
+                    ps.setString(7, nd.serializeContext());
+                    ps.setString(8, contextKey(nd));
+                    ps.addBatch();
                 }
+                ps.executeBatch();
             }
+        }
 
-            if (!toAdd.isEmpty()) {
-                try (Connection c = provider.getConnection()) {
-                    try (PreparedStatement ps = c.prepareStatement(prefix.apply(USER_PERMISSIONS_INSERT))) {
-                        for (NodeModel nd : toAdd) {
-                            ps.setString(1, user.getUuid().toString());
-                            ps.setString(2, nd.getPermission());
-                            ps.setBoolean(3, nd.isValue());
-                            ps.setString(4, nd.getServer());
-                            ps.setString(5, nd.getWorld());
-                            ps.setLong(6, nd.getExpiry());
-                            ps.setString(7, nd.serializeContext());
-                            ps.addBatch();
-                        }
-                        ps.executeBatch();
-                    }
-                } catch (SQLException e) {
-                    e.printStackTrace();
-                    return false;
+        if (!toAdd.isEmpty()) {
+            try (PreparedStatement ps = c.prepareStatement(prefix.apply(USER_PERMISSIONS_INSERT))) {
+                for (NodeModel nd : toAdd) {
+                    ps.setString(1, user.getUuid().toString());
+                    ps.setString(2, nd.getPermission());
+                    ps.setBoolean(3, nd.isValue());
+                    ps.setString(4, nd.getServer());
+                    ps.setString(5, nd.getWorld());
+                    ps.setLong(6, nd.getExpiry());
+                    ps.setString(7, nd.serializeContext());
+                    ps.setString(8, contextKey(nd));
+                    ps.addBatch();
                 }
+                ps.executeBatch();
             }
+        }
 
-            try (Connection c = provider.getConnection()) {
-                try (PreparedStatement ps = c.prepareStatement(prefix.apply(PLAYER_UPDATE_PRIMARY_GROUP))) {
-                    ps.setString(1, user.getPrimaryGroup().getStoredValue() == null ? "default" : user.getPrimaryGroup().getStoredValue());
-                    ps.setString(2, user.getUuid().toString());
-                    ps.execute();
-                }
-            } catch (SQLException e) {
-                e.printStackTrace();
-                return false;
-            }
+        savePrimaryGroup(c, user, user.getPrimaryGroup().getStoredValue() == null ? "default" : user.getPrimaryGroup().getStoredValue());
+    }
 
-            return true;
-        } finally {
-            user.getIoLock().unlock();
+    private void savePrimaryGroup(Connection c, User user, String primaryGroup) throws SQLException {
+        int updated;
+        try (PreparedStatement ps = c.prepareStatement(prefix.apply(PLAYER_UPDATE_PRIMARY_GROUP))) {
+            ps.setString(1, primaryGroup);
+            ps.setString(2, user.getUuid().toString());
+            updated = ps.executeUpdate();
+        }
+
+        // The players row is normally created by saveUUIDData, which is buffered on login and may not have run yet.
+        if (updated == 0) {
+            try (PreparedStatement ps = c.prepareStatement(prefix.apply(PLAYER_INSERT))) {
+                ps.setString(1, user.getUuid().toString());
+                ps.setString(2, user.getName() == null ? "null" : user.getName().toLowerCase());
+                ps.setString(3, primaryGroup);
+                ps.execute();
+            }
         }
     }
 
@@ -459,8 +583,24 @@ public class SQLBacking extends AbstractBacking {
     @Override
     public Set<UUID> getUniqueUsers() {
         Set<UUID> uuids = new HashSet<>();
-        try (Connection c = provider.getConnection()) {
-            try (PreparedStatement ps = c.prepareStatement(prefix.apply(USER_PERMISSIONS_SELECT_DISTINCT))) {
+        try {
+            // read users which haven't been moved yet first, so that one moved part way through is still seen
+            SQLSchemaV2Migration migration = this.migration;
+            if (migration != null) {
+                migration.readOldUsers(table -> readUniqueUsers("SELECT DISTINCT uuid FROM " + table, uuids));
+            }
+
+            readUniqueUsers(prefix.apply(USER_PERMISSIONS_SELECT_DISTINCT), uuids);
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return null;
+        }
+        return uuids;
+    }
+
+    private void readUniqueUsers(String query, Set<UUID> uuids) throws SQLException {
+        try (Connection c = provider.getConnection(Pool.BULK)) {
+            try (PreparedStatement ps = c.prepareStatement(query)) {
                 try (ResultSet rs = ps.executeQuery()) {
                     while (rs.next()) {
                         String uuid = rs.getString("uuid");
@@ -468,18 +608,30 @@ public class SQLBacking extends AbstractBacking {
                     }
                 }
             }
+        }
+    }
+
+    @Override
+    public List<HeldPermission<UUID>> getUsersWithPermission(String permission) {
+        // a set, as a user moved between the two reads of an in progress upgrade will be seen twice
+        Set<HeldPermission<UUID>> held = new LinkedHashSet<>();
+        try {
+            SQLSchemaV2Migration migration = this.migration;
+            if (migration != null) {
+                migration.readOldUsers(table -> readUsersWithPermission("SELECT uuid, value, server, world, expiry, contexts FROM " + table + " WHERE permission=?", permission, held));
+            }
+
+            readUsersWithPermission(prefix.apply(USER_PERMISSIONS_SELECT_PERMISSION), permission, held);
         } catch (SQLException e) {
             e.printStackTrace();
             return null;
         }
-        return uuids;
+        return ImmutableList.copyOf(held);
     }
 
-    @Override
-    public List<HeldPermission<UUID>> getUsersWithPermission(String permission) {
-        ImmutableList.Builder<HeldPermission<UUID>> held = ImmutableList.builder();
-        try (Connection c = provider.getConnection()) {
-            try (PreparedStatement ps = c.prepareStatement(prefix.apply(USER_PERMISSIONS_SELECT_PERMISSION))) {
+    private void readUsersWithPermission(String query, String permission, Set<HeldPermission<UUID>> held) throws SQLException {
+        try (Connection c = provider.getConnection(Pool.BULK)) {
+            try (PreparedStatement ps = c.prepareStatement(query)) {
                 ps.setString(1, permission);
                 try (ResultSet rs = ps.executeQuery()) {
                     while (rs.next()) {
@@ -495,11 +647,7 @@ public class SQLBacking extends AbstractBacking {
                     }
                 }
             }
-        } catch (SQLException e) {
-            e.printStackTrace();
-            return null;
         }
-        return held.build();
     }
 
     @Override
@@ -596,12 +744,32 @@ public class SQLBacking extends AbstractBacking {
 
     @Override
     public boolean loadAllGroups() {
-        List<String> groups = new ArrayList<>();
+        // load every group and all of their permissions in two queries, rather than one query per group
+        Map<String, List<Node>> groups = new HashMap<>();
         try (Connection c = provider.getConnection()) {
             try (PreparedStatement ps = c.prepareStatement(prefix.apply(GROUP_SELECT_ALL))) {
                 try (ResultSet rs = ps.executeQuery()) {
                     while (rs.next()) {
-                        groups.add(rs.getString("name").toLowerCase());
+                        groups.put(rs.getString("name").toLowerCase(), new ArrayList<>());
+                    }
+                }
+            }
+
+            try (PreparedStatement ps = c.prepareStatement(prefix.apply(GROUP_PERMISSIONS_SELECT_ALL))) {
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        List<Node> nodes = groups.get(rs.getString("name").toLowerCase());
+                        if (nodes == null) {
+                            continue;
+                        }
+
+                        String permission = rs.getString("permission");
+                        boolean value = rs.getBoolean("value");
+                        String server = rs.getString("server");
+                        String world = rs.getString("world");
+                        long expiry = rs.getLong("expiry");
+                        String contexts = rs.getString("contexts");
+                        nodes.add(NodeModel.deserialize(permission, value, server, world, expiry, contexts).toNode());
                     }
                 }
             }
@@ -611,115 +779,119 @@ public class SQLBacking extends AbstractBacking {
             return false;
         }
 
-        boolean success = true;
-        for (String g : groups) {
-            if (!loadGroup(g)) {
-                success = false;
-            }
-        }
+        applyGroupNodes(groups);
 
-        if (success) {
-            GroupManager gm = plugin.getGroupManager();
-            gm.getAll().values().stream()
-                    .filter(g -> !groups.contains(g.getName()))
-                    .forEach(gm::unload);
-        }
-        return success;
+        GroupManager gm = plugin.getGroupManager();
+        gm.getAll().values().stream()
+                .filter(g -> !groups.containsKey(g.getName()))
+                .forEach(gm::unload);
+        return true;
     }
 
     @Override
     public boolean saveGroup(Group group) {
         group.getIoLock().lock();
         try {
-            // Empty data, just delete.
-            if (group.getNodes().isEmpty()) {
-                try (Connection c = provider.getConnection()) {
-                    try (PreparedStatement ps = c.prepareStatement(prefix.apply(GROUP_PERMISSIONS_DELETE))) {
-                        ps.setString(1, group.getName());
-                        ps.execute();
-                    }
-                } catch (SQLException e) {
-                    e.printStackTrace();
-                    return false;
+            return provider.transaction(c -> {
+                saveGroup(c, group);
+                return true;
+            });
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return false;
+        } finally {
+            group.getIoLock().unlock();
+        }
+    }
+
+    @Override
+    public Set<Group> saveGroups(Collection<Group> groups) {
+        List<Group> sorted = groups.stream().sorted(Comparator.comparing(Group::getName)).collect(Collectors.toList());
+        sorted.forEach(g -> g.getIoLock().lock());
+        try {
+            provider.transaction(c -> {
+                for (Group group : sorted) {
+                    saveGroup(c, group);
                 }
                 return true;
+            });
+            return Collections.emptySet();
+        } catch (SQLException e) {
+            e.printStackTrace();
+        } finally {
+            sorted.forEach(g -> g.getIoLock().unlock());
+        }
+
+        return super.saveGroups(groups);
+    }
+
+    private void saveGroup(Connection c, Group group) throws SQLException {
+        // Empty data, just delete.
+        if (group.getNodes().isEmpty()) {
+            try (PreparedStatement ps = c.prepareStatement(prefix.apply(GROUP_PERMISSIONS_DELETE))) {
+                ps.setString(1, group.getName());
+                ps.execute();
             }
+            return;
+        }
 
-            // Get a snapshot of current data
-            Set<NodeModel> remote = new HashSet<>();
-            try (Connection c = provider.getConnection()) {
-                try (PreparedStatement ps = c.prepareStatement(prefix.apply(GROUP_PERMISSIONS_SELECT))) {
-                    ps.setString(1, group.getName());
+        // Get a snapshot of current data
+        Set<NodeModel> remote = new HashSet<>();
+        try (PreparedStatement ps = c.prepareStatement(prefix.apply(GROUP_PERMISSIONS_SELECT))) {
+            ps.setString(1, group.getName());
 
-                    try (ResultSet rs = ps.executeQuery()) {
-                        while (rs.next()) {
-                            String permission = rs.getString("permission");
-                            boolean value = rs.getBoolean("value");
-                            String server = rs.getString("server");
-                            String world = rs.getString("world");
-                            long expiry = rs.getLong("expiry");
-                            String contexts = rs.getString("contexts");
-                            remote.add(NodeModel.deserialize(permission, value, server, world, expiry, contexts));
-                        }
-                    }
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    String permission = rs.getString("permission");
+                    boolean value = rs.getBoolean("value");
+                    String server = rs.getString("server");
+                    String world = rs.getString("world");
+                    long expiry = rs.getLong("expiry");
+                    String contexts = rs.getString("contexts");
+                    remote.add(NodeModel.deserialize(permission, value, server, world, expiry, contexts));
                 }
-            } catch (SQLException e) {
-                e.printStackTrace();
-                return false;
             }
+        }
 
-            Set<NodeModel> local = group.getNodes().values().stream().map(NodeModel::fromNode).collect(Collectors.toSet());
+        Set<NodeModel> local = group.getNodes().values().stream().map(NodeModel::fromNode).collect(Collectors.toSet());
 
-            Map.Entry<Set<NodeModel>, Set<NodeModel>> diff = compareSets(local, remote);
+        Map.Entry<Set<NodeModel>, Set<NodeModel>> diff = compareSets(local, remote);
 
-            Set<NodeModel> toAdd = diff.getKey();
-            Set<NodeModel> toRemove = diff.getValue();
+        Set<NodeModel> toAdd = diff.getKey();
+        Set<NodeModel> toRemove = diff.getValue();
 
-            if (!toRemove.isEmpty()) {
-                try (Connection c = provider.getConnection()) {
-                    try (PreparedStatement ps = c.prepareStatement(prefix.apply(GROUP_PERMISSIONS_DELETE_SPECIFIC))) {
-                        for (NodeModel nd : toRemove) {
-                            ps.setString(1, group.getName());
-                            ps.setString(2, nd.getPermission());
-                            ps.setBoolean(3, nd.isValue());
-                            ps.setString(4, nd.getServer());
-                            ps.setString(5, nd.getWorld());
-                            ps.setLong(6, nd.getExpiry());
-                            ps.setString(7, nd.serializeContext());
-                            ps.addBatch();
-                        }
-                        ps.executeBatch();
-                    }
-                } catch (SQLException e) {
-                    e.printStackTrace();
-                    return false;
+        if (!toRemove.isEmpty()) {
+            try (PreparedStatement ps = c.prepareStatement(prefix.apply(GROUP_PERMISSIONS_DELETE_SPECIFIC))) {
+                for (NodeModel nd : toRemove) {
+                    ps.setString(1, group.getName());
+                    ps.setString(2, nd.getPermission());
+                    ps.setBoolean(3, nd.isValue());
+                    ps.setString(4, nd.getServer());
+                    ps.setString(5, nd.getWorld());
+                    ps.setLong(6, nd.getExpiry());
+                    ps.setString(7, nd.serializeContext());
+                    ps.setString(8, contextKey(nd));
+                    ps.addBatch();
                 }
+                ps.executeBatch();
             }
+        }
 
-            if (!toAdd.isEmpty()) {
-                try (Connection c = provider.getConnection()) {
-                    try (PreparedStatement ps = c.prepareStatement(prefix.apply(GROUP_PERMISSIONS_INSERT))) {
-                        for (NodeModel nd : toAdd) {
-                            ps.setString(1, group.getName());
-                            ps.setString(2, nd.getPermission());
-                            ps.setBoolean(3, nd.isValue());
-                            ps.setString(4, nd.getServer());
-                            ps.setString(5, nd.getWorld());
-                            ps.setLong(6, nd.getExpiry());
-                            ps.setString(7, nd.serializeContext());
-                            ps.addBatch();
-                        }
-                        ps.executeBatch();
-                    }
-                } catch (SQLException e) {
-                    e.printStackTrace();
-                    return false;
+        if (!toAdd.isEmpty()) {
+            try (PreparedStatement ps = c.prepareStatement(prefix.apply(GROUP_PERMISSIONS_INSERT))) {
+                for (NodeModel nd : toAdd) {
+                    ps.setString(1, group.getName());
+                    ps.setString(2, nd.getPermission());
+                    ps.setBoolean(3, nd.isValue());
+                    ps.setString(4, nd.getServer());
+                    ps.setString(5, nd.getWorld());
+                    ps.setLong(6, nd.getExpiry());
+                    ps.setString(7, nd.serializeContext());
+                    ps.setString(8, contextKey(nd));
+                    ps.addBatch();
                 }
+                ps.executeBatch();
             }
-
-            return true;
-        } finally {
-            group.getIoLock().unlock();
         }
     }
 
@@ -752,7 +924,7 @@ public class SQLBacking extends AbstractBacking {
     @Override
     public List<HeldPermission<String>> getGroupsWithPermission(String permission) {
         ImmutableList.Builder<HeldPermission<String>> held = ImmutableList.builder();
-        try (Connection c = provider.getConnection()) {
+        try (Connection c = provider.getConnection(Pool.BULK)) {
             try (PreparedStatement ps = c.prepareStatement(prefix.apply(GROUP_PERMISSIONS_SELECT_PERMISSION))) {
                 ps.setString(1, permission);
                 try (ResultSet rs = ps.executeQuery()) {
@@ -855,12 +1027,13 @@ public class SQLBacking extends AbstractBacking {
 
     @Override
     public boolean loadAllTracks() {
-        List<String> tracks = new ArrayList<>();
+        // the groups are already in the result set, so there's no need to query each track again
+        Map<String, String> tracks = new HashMap<>();
         try (Connection c = provider.getConnection()) {
             try (PreparedStatement ps = c.prepareStatement(prefix.apply(TRACK_SELECT_ALL))) {
                 try (ResultSet rs = ps.executeQuery()) {
                     while (rs.next()) {
-                        tracks.add(rs.getString("name").toLowerCase());
+                        tracks.put(rs.getString("name").toLowerCase(), rs.getString("groups"));
                     }
                 }
             }
@@ -869,20 +1042,21 @@ public class SQLBacking extends AbstractBacking {
             return false;
         }
 
-        boolean success = true;
-        for (String t : tracks) {
-            if (!loadTrack(t)) {
-                success = false;
+        for (Map.Entry<String, String> e : tracks.entrySet()) {
+            Track track = plugin.getTrackManager().getOrMake(e.getKey());
+            track.getIoLock().lock();
+            try {
+                track.setGroups(gson.fromJson(e.getValue(), LIST_STRING_TYPE));
+            } finally {
+                track.getIoLock().unlock();
             }
         }
 
-        if (success) {
-            TrackManager tm = plugin.getTrackManager();
-            tm.getAll().values().stream()
-                    .filter(t -> !tracks.contains(t.getName()))
-                    .forEach(tm::unload);
-        }
-        return success;
+        TrackManager tm = plugin.getTrackManager();
+        tm.getAll().values().stream()
+                .filter(t -> !tracks.containsKey(t.getName()))
+                .forEach(tm::unload);
+        return true;
     }
 
     @Override
@@ -996,7 +1170,7 @@ public class SQLBacking extends AbstractBacking {
         final String u = username.toLowerCase();
         final AtomicReference<UUID> uuid = new AtomicReference<>(null);
 
-        try (Connection c = provider.getConnection()) {
+        try (Connection c = provider.getConnection(Pool.LOGIN)) {
             try (PreparedStatement ps = c.prepareStatement(prefix.apply(PLAYER_SELECT_UUID))) {
                 ps.setString(1, u);
                 try (ResultSet rs = ps.executeQuery()) {
@@ -1017,7 +1191,7 @@ public class SQLBacking extends AbstractBacking {
     public String getName(UUID uuid) {
         final AtomicReference<String> name = new AtomicReference<>(null);
 
-        try (Connection c = provider.getConnection()) {
+        try (Connection c = provider.getConnection(Pool.LOGIN)) {
             try (PreparedStatement ps = c.prepareStatement(prefix.apply(PLAYER_SELECT_USERNAME))) {
                 ps.setString(1, uuid.toString());
                 try (ResultSet rs = ps.executeQuery()) {
@@ -42,9 +42,7 @@ import org.yaml.snakeyaml.DumperOptions;
 import org.yaml.snakeyaml.Yaml;
 
 import java.io.BufferedReader;
-import java.io.BufferedWriter;
 import java.io.File;
-import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.util.ArrayList;
@@ -74,9 +72,8 @@ public class YAMLBacking extends FlatfileBacking {
     }
 
     public boolean writeMapToFile(File file, Map<String, Object> values) {
-        try (BufferedWriter writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
-            getYaml().dump(values, writer);
-            writer.flush();
+        try {
+            writeAtomically(file, writer -> getYaml().dump(values, writer));
             return true;
         } catch (Throwable t) {
             plugin.getLog().warn("Exception whilst writing to file: " + file.getAbsolutePath());
@@ -158,15 +155,6 @@ public class YAMLBacking extends FlatfileBacking {
                     return true;
                 }
 
-                if (!userFile.exists()) {
-                    try {
-                        userFile.createNewFile();
-                    } catch (IOException e) {
-                        e.printStackTrace();
-                        return false;
-                    }
-                }
-
                 Map<String, Object> values = new LinkedHashMap<>();
                 values.put("uuid", user.getUuid().toString());
                 values.put("name", user.getName());
@@ -260,13 +248,6 @@ public class YAMLBacking extends FlatfileBacking {
                         return true;
                     });
                 } else {
-                    try {
-                        groupFile.createNewFile();
-                    } catch (IOException e) {
-                        e.printStackTrace();
-                        return false;
-                    }
-
                     Map<String, Object> values = new LinkedHashMap<>();
                     values.put("name", group.getName());
                     Set<NodeModel> data = group.getNodes().values().stream().map(NodeModel::fromNode).collect(Collectors.toCollection(LinkedHashSet::new));
@@ -285,21 +266,37 @@ public class YAMLBacking extends FlatfileBacking {
         group.getIoLock().lock();
         try {
             return call(() -> {
-                File groupFile = new File(groupsDir, name + ".yml");
-                registerFileAction("groups", groupFile);
+                Set<Node> nodes = readGroupNodes(name);
+                if (nodes == null) {
+                    return false;
+                }
 
-                return groupFile.exists() && readMapFromFile(groupFile, values -> {
-                    Set<NodeModel> data = deserializePermissions((List<Object>) values.get("permissions"));
-                    Set<Node> nodes = data.stream().map(NodeModel::toNode).collect(Collectors.toSet());
-                    group.setNodes(nodes);
-                    return true;
-                });
+                group.setNodes(nodes);
+                return true;
             }, false);
         } finally {
             group.getIoLock().unlock();
         }
     }
 
+    @Override
+    protected Set<Node> readGroupNodes(String name) {
+        File groupFile = new File(groupsDir, name + ".yml");
+        registerFileAction("groups", groupFile);
+
+        if (!groupFile.exists()) {
+            return null;
+        }
+
+        Set<Node> nodes = new HashSet<>();
+        boolean success = readMapFromFile(groupFile, values -> {
+            Set<NodeModel> data = deserializePermissions((List<Object>) values.get("permissions"));
+            data.stream().map(NodeModel::toNode).forEach(nodes::add);
+            return true;
+        });
+        return success ? nodes : null;
+    }
+
     @Override
     public boolean saveGroup(Group group) {
         group.getIoLock().lock();
@@ -308,15 +305,6 @@ public class YAMLBacking extends FlatfileBacking {
                 File groupFile = new File(groupsDir, group.getName() + ".yml");
                 registerFileAction("groups", groupFile);
 
-                if (!groupFile.exists()) {
-                    try {
-                        groupFile.createNewFile();
-                    } catch (IOException e) {
-                        e.printStackTrace();
-                        return false;
-                    }
-                }
-
                 Map<String, Object> values = new LinkedHashMap<>();
                 values.put("name", group.getName());
                 Set<NodeModel> data = group.getNodes().values().stream().map(NodeModel::fromNode).collect(Collectors.toCollection(LinkedHashSet::new));
@@ -373,13 +361,6 @@ public class YAMLBacking extends FlatfileBacking {
                         return true;
                     });
                 } else {
-                    try {
-                        trackFile.createNewFile();
-                    } catch (IOException e) {
-                        e.printStackTrace();
-                        return false;
-                    }
-
                     Map<String, Object> values = new LinkedHashMap<>();
                     values.put("name", track.getName());
                     values.put("groups", track.getGroups());
@@ -398,19 +379,36 @@ public class YAMLBacking extends FlatfileBacking {
         track.getIoLock().lock();
         try {
             return call(() -> {
-                File trackFile = new File(tracksDir, name + ".yml");
-                registerFileAction("tracks", trackFile);
+                List<String> groups = readTrackGroups(name);
+                if (groups == null) {
+                    return false;
+                }
 
-                return trackFile.exists() && readMapFromFile(trackFile, values -> {
-                    track.setGroups((List<String>) values.get("groups"));
-                    return true;
-                });
+                track.setGroups(groups);
+                return true;
             }, false);
         } finally {
             track.getIoLock().unlock();
         }
     }
 
+    @Override
+    protected List<String> readTrackGroups(String name) {
+        File trackFile = new File(tracksDir, name + ".yml");
+        registerFileAction("tracks", trackFile);
+
+        if (!trackFile.exists()) {
+            return null;
+        }
+
+        List<String> groups = new ArrayList<>();
+        boolean success = readMapFromFile(trackFile, values -> {
+            groups.addAll((List<String>) values.get("groups"));
+            return true;
+        });
+        return success ? groups : null;
+    }
+
     @Override
     public boolean saveTrack(Track track) {
         track.getIoLock().lock();
@@ -419,15 +417,6 @@ public class YAMLBacking extends FlatfileBacking {
                 File trackFile = new File(tracksDir, track.getName() + ".yml");
                 registerFileAction("tracks", trackFile);
 
-                if (!trackFile.exists()) {
-                    try {
-                        trackFile.createNewFile();
-                    } catch (IOException e) {
-                        e.printStackTrace();
-                        return false;
-                    }
-                }
-
                 Map<String, Object> values = new LinkedHashMap<>();
                 values.put("name", track.getName());
                 values.put("groups", track.getGroups());
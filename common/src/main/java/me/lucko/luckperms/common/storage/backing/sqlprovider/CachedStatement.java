@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) 2016 Lucko (Luck) <luck@lucko.me>
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.luckperms.common.storage.backing.sqlprovider;
+
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.Delegate;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Queue;
+
+/**
+ * A statement checked out of a {@link StatementCachingConnection}. Closing it hands the underlying statement back
+ * to the cache instead of closing it.
+ */
+@RequiredArgsConstructor
+class CachedStatement implements PreparedStatement {
+
+    @Delegate(excludes = Exclude.class)
+    private final PreparedStatement delegate;
+
+    private final Queue<PreparedStatement> idle;
+
+    private boolean closed = false;
+
+    @Override
+    public void close() throws SQLException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+
+        try {
+            delegate.clearParameters();
+            delegate.clearBatch();
+        } catch (SQLException e) {
+            delegate.close();
+            throw e;
+        }
+        idle.add(delegate);
+    }
+
+    @Override
+    public boolean isClosed() {
+        return closed;
+    }
+
+    private interface Exclude {
+        void close() throws SQLException;
+        boolean isClosed() throws SQLException;
+    }
+}
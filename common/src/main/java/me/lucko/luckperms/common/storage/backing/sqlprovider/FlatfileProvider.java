@@ -28,6 +28,12 @@ import java.sql.DriverManager;
 import java.sql.SQLException;
 import java.util.concurrent.locks.ReentrantLock;
 
+/**
+ * A provider for embedded databases, which keeps a single connection open to the database file.
+ *
+ * <p>The connection is checked out by one thread at a time, so a transaction started on it can't pick up, or roll
+ * back, statements run by another thread.</p>
+ */
 abstract class FlatfileProvider extends SQLProvider {
 
     private final File file;
@@ -42,6 +48,16 @@ abstract class FlatfileProvider extends SQLProvider {
     protected abstract String getDriverClass();
     protected abstract String getDriverId();
 
+    /**
+     * Applies any driver specific settings to a newly opened connection.
+     *
+     * @param connection the connection
+     * @throws SQLException if the settings could not be applied
+     */
+    protected void setupConnection(Connection connection) throws SQLException {
+
+    }
+
     @Override
     public void init() throws Exception {
 
@@ -49,8 +65,13 @@ abstract class FlatfileProvider extends SQLProvider {
 
     @Override
     public void shutdown() throws Exception {
-        if (connection != null && !connection.isClosed()) {
-            connection.close();
+        lock.lock();
+        try {
+            if (connection != null && !connection.isClosed()) {
+                connection.close();
+            }
+        } finally {
+            lock.unlock();
         }
     }
 
@@ -65,18 +86,36 @@ abstract class FlatfileProvider extends SQLProvider {
 
                 Connection connection = DriverManager.getConnection(getDriverId() + ":" + file.getAbsolutePath());
                 if (connection != null) {
-                    this.connection = new WrappedConnection(connection, false);
+                    setupConnection(connection);
+                    this.connection = new StatementCachingConnection(connection);
                 }
             }
 
-        } finally {
+            if (this.connection == null) {
+                throw new SQLException("Connection is null");
+            }
+        } catch (SQLException | RuntimeException e) {
             lock.unlock();
+            throw e;
         }
 
-        if (this.connection == null) {
-            throw new SQLException("Connection is null");
+        // the lock is held until the caller closes the connection
+        return new CheckedOutConnection(this.connection);
+    }
+
+    private final class CheckedOutConnection extends WrappedConnection {
+        private boolean released = false;
+
+        private CheckedOutConnection(Connection delegate) {
+            super(delegate, false);
         }
 
-        return this.connection;
+        @Override
+        public void close() {
+            if (!released) {
+                released = true;
+                lock.unlock();
+            }
+        }
     }
 }
@@ -0,0 +1,169 @@
+/*
+ * Copyright (c) 2016 Lucko (Luck) <luck@lucko.me>
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.luckperms.common.storage.backing.sqlprovider;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+
+import me.lucko.luckperms.common.storage.DatastoreConfiguration;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A provider backed by a separate Hikari pool for each {@link Pool}.
+ */
+abstract class HikariProvider extends SQLProvider {
+
+    protected final DatastoreConfiguration configuration;
+
+    private final Map<Pool, HikariDataSource> pools = new EnumMap<>(Pool.class);
+    private final Map<Pool, WaitMetrics> metrics = new EnumMap<>(Pool.class);
+
+    HikariProvider(String name, DatastoreConfiguration configuration) {
+        super(name);
+        this.configuration = configuration;
+    }
+
+    /**
+     * Creates the driver specific configuration for a pool connecting to the given address.
+     *
+     * @param address the address, in the form "host" or "host:port"
+     * @return the pool configuration
+     */
+    protected abstract HikariConfig createConfig(String address);
+
+    @Override
+    public void init() throws Exception {
+        for (Pool pool : Pool.values()) {
+            String address = configuration.getAddress();
+            String replica = configuration.getReadReplicaAddress();
+            if (pool == Pool.BULK && replica != null && !replica.isEmpty()) {
+                address = replica;
+            }
+
+            HikariConfig config = createConfig(address);
+            config.setPoolName("luckperms-" + pool.name().toLowerCase());
+            config.setMaximumPoolSize(getPoolSize(pool));
+
+            // We will wait for 15 seconds to get a connection from the pool.
+            // Default is 30, but it shouldn't be taking that long.
+            config.setConnectionTimeout(TimeUnit.SECONDS.toMillis(15)); // 15000
+
+            // If a connection is not returned within 10 seconds, it's probably safe to assume it's been leaked.
+            // Searches over large tables can legitimately take longer than that, so the bulk pool is given a minute.
+            config.setLeakDetectionThreshold(TimeUnit.SECONDS.toMillis(pool == Pool.BULK ? 60 : 10));
+
+            pools.put(pool, new HikariDataSource(config));
+            metrics.put(pool, new WaitMetrics());
+        }
+    }
+
+    private int getPoolSize(Pool pool) {
+        switch (pool) {
+            case LOGIN:
+                return configuration.getLoginPoolSize();
+            case BULK:
+                return configuration.getBulkPoolSize();
+            default:
+                return configuration.getPoolSize();
+        }
+    }
+
+    @Override
+    public void shutdown() throws Exception {
+        for (HikariDataSource pool : pools.values()) {
+            pool.close();
+        }
+        pools.clear();
+    }
+
+    @Override
+    public WrappedConnection getConnection() throws SQLException {
+        return getConnection(Pool.WRITE);
+    }
+
+    @Override
+    public WrappedConnection getConnection(Pool pool) throws SQLException {
+        long start = System.nanoTime();
+        Connection connection = pools.get(pool).getConnection();
+        metrics.get(pool).record(System.nanoTime() - start);
+
+        if (connection == null) {
+            throw new SQLException("Connection is null");
+        }
+        return new WrappedConnection(connection, true);
+    }
+
+    @Override
+    public Map<String, String> getMeta() {
+        Map<String, String> meta = new LinkedHashMap<>();
+        for (Map.Entry<Pool, HikariDataSource> e : pools.entrySet()) {
+            HikariPoolMXBean bean = e.getValue().getHikariPoolMXBean();
+            WaitMetrics wait = metrics.get(e.getKey());
+
+            meta.put("Pool " + e.getKey().name().toLowerCase(), String.format(
+                    "%d active, %d idle, %d waiting, wait avg %.2fms / max %.2fms over %d connections",
+                    bean.getActiveConnections(),
+                    bean.getIdleConnections(),
+                    bean.getThreadsAwaitingConnection(),
+                    wait.getAverageMillis(),
+                    wait.getMaxMillis(),
+                    wait.getCount()
+            ));
+        }
+        return meta;
+    }
+
+    private static final class WaitMetrics {
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+
+        private void record(long nanos) {
+            count.increment();
+            totalNanos.add(nanos);
+            maxNanos.accumulate(nanos);
+        }
+
+        private long getCount() {
+            return count.sum();
+        }
+
+        private double getAverageMillis() {
+            long count = this.count.sum();
+            return count == 0 ? 0 : totalNanos.sum() / (double) count / 1_000_000;
+        }
+
+        private double getMaxMillis() {
+            return maxNanos.get() / 1_000_000d;
+        }
+    }
+}
@@ -23,31 +23,22 @@
 package me.lucko.luckperms.common.storage.backing.sqlprovider;
 
 import com.zaxxer.hikari.HikariConfig;
-import com.zaxxer.hikari.HikariDataSource;
 
 import me.lucko.luckperms.common.storage.DatastoreConfiguration;
 
-import java.sql.Connection;
-import java.sql.SQLException;
-import java.util.concurrent.TimeUnit;
+public class MySQLProvider extends HikariProvider {
 
-public class MySQLProvider extends SQLProvider {
-
-    private final DatastoreConfiguration configuration;
     private final String driverClass;
-    private HikariDataSource hikari;
 
     public MySQLProvider(String name, String driverClass, DatastoreConfiguration configuration) {
-        super(name);
-        this.configuration = configuration;
+        super(name, configuration);
         this.driverClass = driverClass;
     }
 
     @Override
-    public void init() throws Exception {
+    protected HikariConfig createConfig(String address) {
         HikariConfig config = new HikariConfig();
 
-        String address = configuration.getAddress();
         String[] addressSplit = address.split(":");
         address = addressSplit[0];
         String port = addressSplit.length > 1 ? addressSplit[1] : "3306";
@@ -56,9 +47,6 @@ public class MySQLProvider extends SQLProvider {
         String username = configuration.getUsername();
         String password = configuration.getPassword();
 
-        config.setMaximumPoolSize(configuration.getPoolSize());
-
-        config.setPoolName("luckperms");
         config.setDataSourceClassName(driverClass);
         config.addDataSourceProperty("serverName", address);
         config.addDataSourceProperty("port", port);
@@ -90,32 +78,9 @@ public class MySQLProvider extends SQLProvider {
             config.addDataSourceProperty("properties", "useUnicode=true;characterEncoding=utf8");
         }
 
-        // We will wait for 15 seconds to get a connection from the pool.
-        // Default is 30, but it shouldn't be taking that long.
-        config.setConnectionTimeout(TimeUnit.SECONDS.toMillis(15)); // 15000
-
-        // If a connection is not returned within 10 seconds, it's probably safe to assume it's been leaked.
-        config.setLeakDetectionThreshold(TimeUnit.SECONDS.toMillis(10)); // 10000
-
         // The drivers are really old in some of the older Spigot binaries, so Connection#isValid doesn't work.
         config.setConnectionTestQuery("/* LuckPerms ping */ SELECT 1");
 
-        hikari = new HikariDataSource(config);
-    }
-
-    @Override
-    public void shutdown() throws Exception {
-        if (hikari != null) {
-            hikari.close();
-        }
-    }
-
-    @Override
-    public WrappedConnection getConnection() throws SQLException {
-        Connection connection = hikari.getConnection();
-        if (connection == null) {
-            throw new SQLException("Connection is null");
-        }
-        return new WrappedConnection(connection, true);
+        return config;
     }
 }
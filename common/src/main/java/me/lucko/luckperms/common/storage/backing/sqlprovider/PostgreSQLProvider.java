@@ -23,29 +23,19 @@
 package me.lucko.luckperms.common.storage.backing.sqlprovider;
 
 import com.zaxxer.hikari.HikariConfig;
-import com.zaxxer.hikari.HikariDataSource;
 
 import me.lucko.luckperms.common.storage.DatastoreConfiguration;
 
-import java.sql.Connection;
-import java.sql.SQLException;
-import java.util.concurrent.TimeUnit;
-
-public class PostgreSQLProvider extends SQLProvider {
-
-    private final DatastoreConfiguration configuration;
-    private HikariDataSource hikari;
+public class PostgreSQLProvider extends HikariProvider {
 
     public PostgreSQLProvider(DatastoreConfiguration configuration) {
-        super("PostgreSQL");
-        this.configuration = configuration;
+        super("PostgreSQL", configuration);
     }
 
     @Override
-    public void init() throws Exception {
+    protected HikariConfig createConfig(String address) {
         HikariConfig config = new HikariConfig();
 
-        String address = configuration.getAddress();
         String[] addressSplit = address.split(":");
         address = addressSplit[0];
         String port = addressSplit.length > 1 ? addressSplit[1] : "5432";
@@ -54,9 +44,6 @@ public class PostgreSQLProvider extends SQLProvider {
         String username = configuration.getUsername();
         String password = configuration.getPassword();
 
-        config.setMaximumPoolSize(configuration.getPoolSize());
-
-        config.setPoolName("luckperms");
         config.setDataSourceClassName("org.postgresql.ds.PGSimpleDataSource");
         config.addDataSourceProperty("serverName", address);
         config.addDataSourceProperty("portNumber", port);
@@ -64,32 +51,14 @@ public class PostgreSQLProvider extends SQLProvider {
         config.addDataSourceProperty("user", username);
         config.addDataSourceProperty("password", password);
 
-        // We will wait for 15 seconds to get a connection from the pool.
-        // Default is 30, but it shouldn't be taking that long.
-        config.setConnectionTimeout(TimeUnit.SECONDS.toMillis(15)); // 15000
-
-        // If a connection is not returned within 10 seconds, it's probably safe to assume it's been leaked.
-        config.setLeakDetectionThreshold(TimeUnit.SECONDS.toMillis(10)); // 10000
+        // Pooled connections live for a long time and run the same few queries, so switch to server side
+        // prepared statements straight away rather than after the default five executions.
+        config.addDataSourceProperty("prepareThreshold", "1");
+        config.addDataSourceProperty("preparedStatementCacheQueries", "256");
 
         // Just in-case the driver isn't JDBC4+
         config.setConnectionTestQuery("/* LuckPerms ping */ SELECT 1");
 
-        hikari = new HikariDataSource(config);
-    }
-
-    @Override
-    public void shutdown() throws Exception {
-        if (hikari != null) {
-            hikari.close();
-        }
-    }
-
-    @Override
-    public WrappedConnection getConnection() throws SQLException {
-        Connection connection = hikari.getConnection();
-        if (connection == null) {
-            throw new SQLException("Connection is null");
-        }
-        return new WrappedConnection(connection, true);
+        return config;
     }
 }
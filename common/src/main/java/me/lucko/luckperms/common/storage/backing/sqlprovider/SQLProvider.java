@@ -25,7 +25,10 @@ package me.lucko.luckperms.common.storage.backing.sqlprovider;
 import lombok.Getter;
 import lombok.RequiredArgsConstructor;
 
+import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.Collections;
+import java.util.Map;
 
 @RequiredArgsConstructor
 public abstract class SQLProvider {
@@ -39,4 +42,79 @@ public abstract class SQLProvider {
 
     public abstract WrappedConnection getConnection() throws SQLException;
 
+    /**
+     * Gets a connection from the pool used for the given type of work.
+     *
+     * <p>Providers which only have a single connection or pool ignore the pool type.</p>
+     *
+     * @param pool the pool to take the connection from
+     * @return a connection
+     * @throws SQLException if a connection could not be obtained
+     */
+    public WrappedConnection getConnection(Pool pool) throws SQLException {
+        return getConnection();
+    }
+
+    /**
+     * Runs the given work on a single connection, as one transaction.
+     *
+     * <p>The transaction is committed if the work completes normally, and rolled back otherwise.</p>
+     *
+     * @param work the work to run
+     * @param <T> the result type
+     * @return the result of the work
+     * @throws SQLException if the work or the commit failed
+     */
+    public <T> T transaction(Transaction<T> work) throws SQLException {
+        try (WrappedConnection c = getConnection()) {
+            c.setAutoCommit(false);
+            try {
+                T result = work.run(c);
+                c.commit();
+                return result;
+            } catch (SQLException | RuntimeException e) {
+                c.rollback();
+                throw e;
+            } finally {
+                c.setAutoCommit(true);
+            }
+        }
+    }
+
+    /**
+     * Gets information about the state of the provider, for display in the info command.
+     *
+     * @return the provider meta
+     */
+    public Map<String, String> getMeta() {
+        return Collections.emptyMap();
+    }
+
+    @FunctionalInterface
+    public interface Transaction<T> {
+        T run(Connection c) throws SQLException;
+    }
+
+    /**
+     * The separate pools used by pooled providers, so that slow bulk queries can't starve logins or writes.
+     */
+    public enum Pool {
+
+        /**
+         * Reads made when a player logs in
+         */
+        LOGIN,
+
+        /**
+         * Long running reads - searches and the action log. These may be routed to a read replica.
+         */
+        BULK,
+
+        /**
+         * Writes, and reads which need to see the latest written data
+         */
+        WRITE
+
+    }
+
 }
@@ -0,0 +1,63 @@
+/*
+ * Copyright (c) 2016 Lucko (Luck) <luck@lucko.me>
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.luckperms.common.storage.backing.sqlprovider;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * A long lived connection which reuses the statements prepared against it.
+ *
+ * <p>Each statement is only ever held by one caller at a time. A caller which finds no idle statement for its query
+ * prepares a new one, which joins the cache once closed.</p>
+ */
+class StatementCachingConnection extends WrappedConnection {
+    private final Map<String, Queue<PreparedStatement>> statements = new ConcurrentHashMap<>();
+
+    StatementCachingConnection(Connection delegate) {
+        super(delegate, true);
+    }
+
+    @Override
+    public PreparedStatement prepareStatement(String sql) throws SQLException {
+        Queue<PreparedStatement> idle = statements.get(sql);
+        if (idle == null) {
+            idle = statements.computeIfAbsent(sql, s -> new ConcurrentLinkedQueue<>());
+        }
+
+        PreparedStatement statement;
+        do {
+            statement = idle.poll();
+        } while (statement != null && statement.isClosed());
+
+        if (statement == null) {
+            statement = super.prepareStatement(sql);
+        }
+        return new CachedStatement(statement, idle);
+    }
+}
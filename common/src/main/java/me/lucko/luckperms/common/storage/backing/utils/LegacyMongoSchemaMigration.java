@@ -0,0 +1,125 @@
+/*
+ * Copyright (c) 2016 Lucko (Luck) <luck@lucko.me>
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.luckperms.common.storage.backing.utils;
+
+import lombok.RequiredArgsConstructor;
+
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.ReplaceOneModel;
+import com.mongodb.client.model.WriteModel;
+
+import me.lucko.luckperms.common.core.NodeModel;
+import me.lucko.luckperms.common.storage.backing.MongoDBBacking;
+
+import org.bson.Document;
+import org.bson.conversions.Bson;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Converts user and group documents from the legacy format (nodes stored as a map of serialized node strings)
+ * to the current format (nodes stored as an array of subdocuments).
+ *
+ * Runs while the plugin is online. Each document is only replaced if it is still in the legacy format, so
+ * anything saved by the plugin in the meantime is left untouched.
+ */
+@RequiredArgsConstructor
+public class LegacyMongoSchemaMigration implements Runnable {
+    private static final int BATCH_SIZE = 500;
+    private static final Bson LEGACY = Filters.exists("perms");
+
+    private final MongoDBBacking backing;
+
+    @Override
+    public void run() {
+        try {
+            int users = migrate(backing.getDatabase().getCollection("users"));
+            int groups = migrate(backing.getDatabase().getCollection("groups"));
+
+            if (users != 0 || groups != 0) {
+                backing.getPlugin().getLog().info("Migrated " + users + " users and " + groups + " groups to the new MongoDB schema.");
+            }
+
+            backing.setLegacyDocuments(false);
+        } catch (Exception e) {
+            backing.getPlugin().getLog().severe("Error occurred whilst migrating MongoDB documents to the new schema.");
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Gets if the collection contains any documents still stored in the legacy format
+     *
+     * @param c the collection to check
+     * @return true if there are legacy documents in the collection
+     */
+    public static boolean hasLegacyDocuments(MongoCollection<Document> c) {
+        return c.find(LEGACY).projection(Projections.include("_id")).limit(1).first() != null;
+    }
+
+    private static int migrate(MongoCollection<Document> c) {
+        int count = 0;
+        List<WriteModel<Document>> batch = new ArrayList<>(BATCH_SIZE);
+
+        try (MongoCursor<Document> cursor = c.find(LEGACY).iterator()) {
+            while (cursor.hasNext()) {
+                Document d = cursor.next();
+
+                List<Document> permissions = MongoDBBacking.serializePermissions(
+                        MongoDBBacking.deserializePermissions(d).stream().map(NodeModel::toNode).collect(Collectors.toList())
+                );
+
+                Document migrated = new Document(d);
+                migrated.remove("perms");
+                migrated.append("permissions", permissions);
+
+                batch.add(new ReplaceOneModel<>(Filters.and(Filters.eq("_id", d.get("_id")), LEGACY), migrated));
+                if (batch.size() >= BATCH_SIZE) {
+                    count += flush(c, batch);
+                }
+            }
+        }
+
+        return count + flush(c, batch);
+    }
+
+    private static int flush(MongoCollection<Document> c, List<WriteModel<Document>> batch) {
+        if (batch.isEmpty()) {
+            return 0;
+        }
+
+        BulkWriteResult result = c.bulkWrite(batch, new BulkWriteOptions().ordered(false));
+
+        // the counts aren't available when the write concern is unacknowledged
+        int count = result.wasAcknowledged() ? result.getMatchedCount() : batch.size();
+        batch.clear();
+        return count;
+    }
+}
@@ -154,7 +154,7 @@ public class LegacySQLSchemaMigration implements Runnable {
                     .collect(Collectors.toSet());
 
             try (Connection c = backing.getProvider().getConnection()) {
-                try (PreparedStatement ps = c.prepareStatement(backing.getPrefix().apply("INSERT INTO {prefix}user_permissions(uuid, permission, value, server, world, expiry, contexts) VALUES(?, ?, ?, ?, ?, ?, ?)"))) {
+                try (PreparedStatement ps = c.prepareStatement(backing.getPrefix().apply("INSERT INTO {prefix}user_permissions(uuid, permission, value, server, world, expiry, contexts, context_key) VALUES(?, ?, ?, ?, ?, ?, ?, ?)"))) {
                     for (NodeModel nd : nodes) {
                         ps.setString(1, uuid.toString());
                         ps.setString(2, nd.getPermission());
@@ -163,6 +163,7 @@ public class LegacySQLSchemaMigration implements Runnable {
                         ps.setString(5, nd.getWorld());
                         ps.setLong(6, nd.getExpiry());
                         ps.setString(7, nd.serializeContext());
+                        ps.setString(8, SQLBacking.contextKey(nd));
                         ps.addBatch();
                     }
                     ps.executeBatch();
@@ -233,7 +234,7 @@ public class LegacySQLSchemaMigration implements Runnable {
                     .collect(Collectors.toSet());
 
             try (Connection c = backing.getProvider().getConnection()) {
-                try (PreparedStatement ps = c.prepareStatement(backing.getPrefix().apply("INSERT INTO {prefix}group_permissions(name, permission, value, server, world, expiry, contexts) VALUES(?, ?, ?, ?, ?, ?, ?)"))) {
+                try (PreparedStatement ps = c.prepareStatement(backing.getPrefix().apply("INSERT INTO {prefix}group_permissions(name, permission, value, server, world, expiry, contexts, context_key) VALUES(?, ?, ?, ?, ?, ?, ?, ?)"))) {
                     for (NodeModel nd : nodes) {
                         ps.setString(1, name);
                         ps.setString(2, nd.getPermission());
@@ -242,6 +243,7 @@ public class LegacySQLSchemaMigration implements Runnable {
                         ps.setString(5, nd.getWorld());
                         ps.setLong(6, nd.getExpiry());
                         ps.setString(7, nd.serializeContext());
+                        ps.setString(8, SQLBacking.contextKey(nd));
                         ps.addBatch();
                     }
                     ps.executeBatch();
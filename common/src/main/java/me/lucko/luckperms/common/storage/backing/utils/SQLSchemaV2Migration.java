@@ -0,0 +1,349 @@
+/*
+ * Copyright (c) 2016 Lucko (Luck) <luck@lucko.me>
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.luckperms.common.storage.backing.utils;
+
+import lombok.Getter;
+
+import com.google.common.util.concurrent.Striped;
+
+import me.lucko.luckperms.common.core.NodeModel;
+import me.lucko.luckperms.common.storage.backing.SQLBacking;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Collectors;
+
+/**
+ * Upgrades the permission tables from the original SQL schema to v2, without holding up startup.
+ *
+ * <p>Each table is renamed out of the way and recreated from the current schema file. Rows are then moved across one
+ * holder at a time: read from the old table, inserted into the new one and deleted from the old one, all in a single
+ * transaction. A holder's data is therefore only ever in one of the two tables.</p>
+ *
+ * <p>The group table is small, and is moved before the plugin finishes enabling. The user table can hold tens of
+ * millions of rows, so it is moved by a background task while the server runs. Users which are loaded or saved
+ * before the task reaches them are moved on demand first, and searches over all users read from both tables until
+ * the move is complete.</p>
+ *
+ * <p>The schema version is only recorded once both tables have been moved, so an interrupted upgrade carries on from
+ * where it left off on the next run.</p>
+ */
+public class SQLSchemaV2Migration {
+    public static final String OLD_TABLE_SUFFIX = "_v1";
+    private static final int CHUNK_SIZE = 500;
+
+    private final SQLBacking backing;
+
+    // held while moving a holder, so the background task and an on demand move can't both copy the same rows
+    private final Striped<Lock> holderLocks = Striped.lock(64);
+
+    // reads of the old user table hold the read lock. it is dropped under the write lock.
+    private final ReadWriteLock oldTableLock = new ReentrantReadWriteLock();
+
+    private final String userTable;
+
+    @Getter
+    private final String oldUserTable;
+
+    private List<String> schema;
+    private boolean usersPending = false;
+
+    private volatile boolean complete = false;
+    private volatile boolean stopped = false;
+    private volatile CompletableFuture<Void> task = null;
+
+    public SQLSchemaV2Migration(SQLBacking backing) {
+        this.backing = backing;
+        this.userTable = backing.getPrefix().apply("{prefix}user_permissions");
+        this.oldUserTable = userTable + OLD_TABLE_SUFFIX;
+    }
+
+    /**
+     * Sets up the v2 tables and moves the group table. The user table is left for {@link #start()}.
+     *
+     * @throws Exception if the tables could not be set up
+     */
+    public void prepare() throws Exception {
+        schema = backing.getSchema();
+
+        if (prepareTable("group_permissions")) {
+            String table = backing.getPrefix().apply("{prefix}group_permissions");
+            moveAll(table, table + OLD_TABLE_SUFFIX, "name");
+            backing.executeStatements(Collections.singletonList("DROP TABLE " + table + OLD_TABLE_SUFFIX));
+        }
+
+        usersPending = prepareTable("user_permissions");
+        complete = !usersPending;
+    }
+
+    /**
+     * Starts moving the user table in the background.
+     */
+    public void start() {
+        task = CompletableFuture.runAsync(() -> {
+            try {
+                if (usersPending) {
+                    moveAll(userTable, oldUserTable, "uuid");
+                    if (stopped) {
+                        return;
+                    }
+                }
+                finish();
+            } catch (Exception e) {
+                e.printStackTrace();
+                backing.getPlugin().getLog().severe("The schema upgrade failed. It will carry on from where it left off on the next startup.");
+            }
+        }, backing.getPlugin().getScheduler().getAsyncExecutor());
+    }
+
+    /**
+     * Stops the background task, and waits for the holder currently being moved to finish. Rows which have not yet
+     * been moved stay in the old table until the next startup.
+     */
+    public void stop() {
+        stopped = true;
+        if (task == null) {
+            return;
+        }
+
+        try {
+            task.get(10, TimeUnit.SECONDS);
+        } catch (TimeoutException e) {
+            backing.getPlugin().getLog().warn("Timed out waiting for the schema upgrade to stop.");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            // errors are already handled by the task
+        }
+    }
+
+    public boolean isComplete() {
+        return complete;
+    }
+
+    /**
+     * Moves a user's rows to the new table, if they haven't been already.
+     *
+     * <p>This must be called before the user's permissions are read or written, and outside of any transaction.</p>
+     *
+     * @param uuid the user's uuid
+     * @throws SQLException if the rows could not be moved
+     */
+    public void migrateUser(String uuid) throws SQLException {
+        if (complete) {
+            return;
+        }
+
+        oldTableLock.readLock().lock();
+        try {
+            if (!complete) {
+                move(userTable, oldUserTable, "uuid", uuid);
+            }
+        } finally {
+            oldTableLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Runs a read against the old user table, if it still exists.
+     *
+     * @param reader the read, given the name of the old table
+     * @throws SQLException if the read failed
+     */
+    public void readOldUsers(OldTableReader reader) throws SQLException {
+        if (complete) {
+            return;
+        }
+
+        oldTableLock.readLock().lock();
+        try {
+            if (!complete) {
+                reader.read(oldUserTable);
+            }
+        } finally {
+            oldTableLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Renames the given table out of the way and creates its v2 replacement.
+     *
+     * @param name the table name, without the prefix
+     * @return true if the old table has rows to be moved
+     */
+    private boolean prepareTable(String name) throws SQLException {
+        String current = backing.getPrefix().apply("{prefix}" + name);
+        String old = current + OLD_TABLE_SUFFIX;
+
+        if (backing.tableExists(old)) {
+            // an earlier upgrade was interrupted. the rows it already moved are in the new table, so keep them.
+            if (!backing.tableExists(current)) {
+                backing.executeStatements(statementsFor(current));
+            }
+            return true;
+        }
+
+        if (hasContextKey(current)) {
+            return false;
+        }
+
+        backing.executeStatements(Collections.singletonList("ALTER TABLE " + current + " RENAME TO " + old));
+        backing.executeStatements(statementsFor(current));
+        return true;
+    }
+
+    private boolean hasContextKey(String table) {
+        try (Connection c = backing.getProvider().getConnection()) {
+            try (PreparedStatement ps = c.prepareStatement("SELECT context_key FROM " + table + " WHERE 1=0")) {
+                ps.executeQuery().close();
+            }
+            return true;
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private void moveAll(String table, String old, String holderColumn) throws SQLException {
+        String select = "SELECT DISTINCT " + holderColumn + " FROM " + old + " LIMIT " + CHUNK_SIZE;
+
+        long moved = 0;
+        while (!stopped) {
+            List<String> holders = new ArrayList<>(CHUNK_SIZE);
+            try (Connection c = backing.getProvider().getConnection()) {
+                try (PreparedStatement ps = c.prepareStatement(select)) {
+                    try (ResultSet rs = ps.executeQuery()) {
+                        while (rs.next()) {
+                            holders.add(rs.getString(holderColumn));
+                        }
+                    }
+                }
+            }
+
+            if (holders.isEmpty()) {
+                break;
+            }
+
+            for (String holder : holders) {
+                if (table.equals(userTable)) {
+                    migrateUser(holder);
+                } else {
+                    move(table, old, holderColumn, holder);
+                }
+            }
+
+            moved += holders.size();
+            if (moved % (CHUNK_SIZE * 100) == 0) {
+                backing.getPlugin().getLog().info("Moved " + moved + " holders from " + old + " so far...");
+            }
+        }
+    }
+
+    private void move(String table, String old, String holderColumn, String holder) throws SQLException {
+        Lock lock = holderLocks.get(holder);
+        lock.lock();
+        try {
+            backing.getProvider().transaction(c -> {
+                List<NodeModel> nodes = new ArrayList<>();
+                try (PreparedStatement ps = c.prepareStatement("SELECT permission, value, server, world, expiry, contexts FROM " + old + " WHERE " + holderColumn + "=?")) {
+                    ps.setString(1, holder);
+                    try (ResultSet rs = ps.executeQuery()) {
+                        while (rs.next()) {
+                            nodes.add(NodeModel.deserialize(
+                                    rs.getString("permission"),
+                                    rs.getBoolean("value"),
+                                    rs.getString("server"),
+                                    rs.getString("world"),
+                                    rs.getLong("expiry"),
+                                    rs.getString("contexts")
+                            ));
+                        }
+                    }
+                }
+
+                if (nodes.isEmpty()) {
+                    return null;
+                }
+
+                try (PreparedStatement ps = c.prepareStatement("INSERT INTO " + table + "(" + holderColumn + ", permission, value, server, world, expiry, contexts, context_key) VALUES(?, ?, ?, ?, ?, ?, ?, ?)")) {
+                    for (NodeModel nd : nodes) {
+                        ps.setString(1, holder);
+                        ps.setString(2, nd.getPermission());
+                        ps.setBoolean(3, nd.isValue());
+                        ps.setString(4, nd.getServer());
+                        ps.setString(5, nd.getWorld());
+                        ps.setLong(6, nd.getExpiry());
+                        ps.setString(7, nd.serializeContext());
+                        ps.setString(8, SQLBacking.contextKey(nd));
+                        ps.addBatch();
+                    }
+                    ps.executeBatch();
+                }
+
+                try (PreparedStatement ps = c.prepareStatement("DELETE FROM " + old + " WHERE " + holderColumn + "=?")) {
+                    ps.setString(1, holder);
+                    ps.execute();
+                }
+                return null;
+            });
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void finish() throws SQLException {
+        oldTableLock.writeLock().lock();
+        try {
+            if (usersPending) {
+                backing.executeStatements(Collections.singletonList("DROP TABLE " + oldUserTable));
+            }
+            complete = true;
+        } finally {
+            oldTableLock.writeLock().unlock();
+        }
+
+        backing.executeStatements(statementsFor("schema_version"));
+        backing.getPlugin().getLog().info("Schema upgrade complete.");
+    }
+
+    private List<String> statementsFor(String table) {
+        // also matches the index statements, which are named after their table
+        return schema.stream().filter(s -> s.contains(table)).collect(Collectors.toList());
+    }
+
+    @FunctionalInterface
+    public interface OldTableReader {
+        void read(String table) throws SQLException;
+    }
+}
@@ -0,0 +1,447 @@
+/*
+ * Copyright (c) 2016 Lucko (Luck) <luck@lucko.me>
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.luckperms.common.storage.backing.utils;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiConsumer;
+import java.util.zip.CRC32;
+
+/**
+ * An append-only file of length-prefixed records, each identified by a type and a key.
+ *
+ * Writing a record appends a new copy, and the in-memory index is pointed at it. Older copies are left in place
+ * until the file is compacted, which happens once more than half of it is taken up by superseded records.
+ *
+ * Record layout: [int body length] [int crc32 of body] [byte type] [byte flags] [utf key] [payload]
+ */
+public class SegmentFile {
+    private static final int MAGIC = 0x4C505347; // LPSG
+    private static final int VERSION = 1;
+    private static final int FILE_HEADER_LENGTH = 8;
+    private static final int RECORD_HEADER_LENGTH = 8;
+    private static final int MAX_BODY_LENGTH = 64 * 1024 * 1024;
+
+    private static final byte FLAG_DELETED = 1;
+
+    // don't bother compacting small files
+    private static final long COMPACT_MIN_SIZE = 1024 * 1024;
+
+    private final Path path;
+    private final Map<Byte, Map<String, Entry>> index = new ConcurrentHashMap<>();
+
+    // appends and reads hold the read lock, and compaction (which replaces the file) holds the write lock
+    private final ReadWriteLock compactionLock = new ReentrantReadWriteLock();
+    private final Object writeLock = new Object();
+
+    private FileChannel channel;
+    private long end;
+    private long liveBytes;
+
+    public SegmentFile(File file) {
+        this.path = file.toPath();
+    }
+
+    /**
+     * Opens the file, and builds the index from the records stored in it.
+     * Anything after the last complete record (left by a crash mid-write) is truncated.
+     *
+     * @return the number of bytes discarded from the end of the file
+     * @throws IOException if the file could not be read
+     */
+    public long open() throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+        if (channel.size() == 0) {
+            ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_LENGTH).putInt(MAGIC).putInt(VERSION);
+            header.flip();
+            channel.write(header, 0);
+            channel.force(true);
+        }
+
+        long size = channel.size();
+        long position = FILE_HEADER_LENGTH;
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel.position(0)), 1 << 16))) {
+            if (size < FILE_HEADER_LENGTH || in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Not a segment file: " + path);
+            }
+
+            while (position + RECORD_HEADER_LENGTH <= size) {
+                int length = in.readInt();
+                int crc = in.readInt();
+                if (length <= 0 || length > MAX_BODY_LENGTH || position + RECORD_HEADER_LENGTH + length > size) {
+                    break;
+                }
+
+                byte[] body = new byte[length];
+                in.readFully(body);
+                if (crc(body) != crc) {
+                    break;
+                }
+
+                Record record = Record.parse(body);
+                int recordLength = RECORD_HEADER_LENGTH + length;
+                Entry previous;
+                if (record.deleted) {
+                    previous = typeIndex(record.type).remove(record.key);
+                } else {
+                    previous = typeIndex(record.type).put(record.key, new Entry(position, recordLength));
+                    liveBytes += recordLength;
+                }
+                if (previous != null) {
+                    liveBytes -= previous.length;
+                }
+
+                position += recordLength;
+            }
+        } catch (EOFException e) {
+            // the rest of the file is incomplete
+        }
+
+        // reopen, as closing the stream above closes the channel
+        channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        if (position < size) {
+            channel.truncate(position);
+            channel.force(true);
+        }
+
+        end = position;
+        return size - position;
+    }
+
+    public void close() throws IOException {
+        compactionLock.writeLock().lock();
+        try {
+            if (channel != null) {
+                channel.close();
+                channel = null;
+            }
+        } finally {
+            compactionLock.writeLock().unlock();
+        }
+    }
+
+    private Map<String, Entry> typeIndex(byte type) {
+        return index.computeIfAbsent(type, t -> new ConcurrentHashMap<>());
+    }
+
+    public Set<String> keys(byte type) {
+        return typeIndex(type).keySet();
+    }
+
+    public boolean contains(byte type, String key) {
+        return typeIndex(type).containsKey(key);
+    }
+
+    /**
+     * Reads the payload of a record.
+     *
+     * @param type the record type
+     * @param key the record key
+     * @return the payload, or null if there is no such record
+     * @throws IOException if the record could not be read
+     */
+    public byte[] read(byte type, String key) throws IOException {
+        compactionLock.readLock().lock();
+        try {
+            Entry entry = typeIndex(type).get(key);
+            if (entry == null) {
+                return null;
+            }
+
+            ByteBuffer buffer = ByteBuffer.allocate(entry.length);
+            readFully(channel, buffer, entry.offset);
+            buffer.flip();
+            buffer.position(RECORD_HEADER_LENGTH);
+
+            byte[] body = new byte[entry.length - RECORD_HEADER_LENGTH];
+            buffer.get(body);
+            return Record.parse(body).payload;
+        } finally {
+            compactionLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Reads every live record of the given type in a single sequential pass over the file.
+     *
+     * <p>The records passed on are those which were live when the call started. Records written during the pass
+     * don't cause the older copy to be skipped.</p>
+     *
+     * @param type the record type
+     * @param consumer the consumer, accepting the key and payload of each record
+     * @throws IOException if the file could not be read
+     */
+    public void forEach(byte type, BiConsumer<String, byte[]> consumer) throws IOException {
+        compactionLock.readLock().lock();
+        try {
+            // snapshot the index while no append is half way through updating it
+            List<Entry> entries;
+            synchronized (writeLock) {
+                entries = new ArrayList<>(typeIndex(type).values());
+            }
+            entries.sort(Comparator.comparingLong(e -> e.offset));
+
+            long position = FILE_HEADER_LENGTH;
+            try (FileChannel reader = FileChannel.open(path, StandardOpenOption.READ);
+                 DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(reader.position(position)), 1 << 16))) {
+                for (Entry entry : entries) {
+                    skipFully(in, entry.offset - position);
+
+                    int length = in.readInt();
+                    in.readInt(); // crc, checked when the file was opened
+
+                    byte[] body = new byte[length];
+                    in.readFully(body);
+
+                    Record record = Record.parse(body);
+                    consumer.accept(record.key, record.payload);
+
+                    position = entry.offset + RECORD_HEADER_LENGTH + length;
+                }
+            }
+        } finally {
+            compactionLock.readLock().unlock();
+        }
+    }
+
+    public void write(byte type, String key, byte[] payload) throws IOException {
+        append(type, key, (byte) 0, payload);
+        compactIfNeeded();
+    }
+
+    public boolean delete(byte type, String key) throws IOException {
+        if (!contains(type, key)) {
+            return false;
+        }
+
+        append(type, key, FLAG_DELETED, new byte[0]);
+        compactIfNeeded();
+        return true;
+    }
+
+    private void append(byte type, String key, byte flags, byte[] payload) throws IOException {
+        byte[] body = Record.serialize(type, flags, key, payload);
+        int recordLength = RECORD_HEADER_LENGTH + body.length;
+
+        ByteBuffer buffer = ByteBuffer.allocate(recordLength);
+        buffer.putInt(body.length).putInt(crc(body)).put(body);
+        buffer.flip();
+
+        compactionLock.readLock().lock();
+        try {
+            synchronized (writeLock) {
+                long offset = end;
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer, offset + buffer.position());
+                }
+                channel.force(false);
+                end += recordLength;
+
+                Entry previous;
+                if (flags == FLAG_DELETED) {
+                    previous = typeIndex(type).remove(key);
+                } else {
+                    previous = typeIndex(type).put(key, new Entry(offset, recordLength));
+                    liveBytes += recordLength;
+                }
+                if (previous != null) {
+                    liveBytes -= previous.length;
+                }
+            }
+        } finally {
+            compactionLock.readLock().unlock();
+        }
+    }
+
+    private void compactIfNeeded() throws IOException {
+        long size;
+        long live;
+        synchronized (writeLock) {
+            size = end;
+            live = liveBytes;
+        }
+
+        if (size > COMPACT_MIN_SIZE && size - live > live) {
+            compact();
+        }
+    }
+
+    /**
+     * Rewrites the file with only the latest copy of each record.
+     *
+     * @throws IOException if the file could not be rewritten
+     */
+    public void compact() throws IOException {
+        compactionLock.writeLock().lock();
+        try {
+            List<Map.Entry<Byte, Map.Entry<String, Entry>>> entries = new ArrayList<>();
+            for (Map.Entry<Byte, Map<String, Entry>> type : index.entrySet()) {
+                for (Map.Entry<String, Entry> e : type.getValue().entrySet()) {
+                    entries.add(new AbstractMap.SimpleImmutableEntry<>(type.getKey(), e));
+                }
+            }
+            entries.sort(Comparator.comparingLong(e -> e.getValue().getValue().offset));
+
+            Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+            Map<Byte, Map<String, Entry>> rebuilt = new HashMap<>();
+            long position = FILE_HEADER_LENGTH;
+
+            try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_LENGTH).putInt(MAGIC).putInt(VERSION);
+                header.flip();
+                out.write(header);
+
+                for (Map.Entry<Byte, Map.Entry<String, Entry>> e : entries) {
+                    Entry entry = e.getValue().getValue();
+                    ByteBuffer buffer = ByteBuffer.allocate(entry.length);
+                    readFully(channel, buffer, entry.offset);
+                    buffer.flip();
+                    while (buffer.hasRemaining()) {
+                        out.write(buffer);
+                    }
+
+                    rebuilt.computeIfAbsent(e.getKey(), t -> new HashMap<>()).put(e.getValue().getKey(), new Entry(position, entry.length));
+                    position += entry.length;
+                }
+
+                out.force(true);
+            }
+
+            channel.close();
+            try {
+                try {
+                    Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+                }
+            } finally {
+                // reopen even if the move failed - the original file and the index still match in that case
+                channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+                Files.deleteIfExists(temp);
+            }
+
+            for (Map.Entry<Byte, Map<String, Entry>> type : rebuilt.entrySet()) {
+                typeIndex(type.getKey()).putAll(type.getValue());
+            }
+            end = position;
+            liveBytes = position - FILE_HEADER_LENGTH;
+        } finally {
+            compactionLock.writeLock().unlock();
+        }
+    }
+
+    private static void skipFully(DataInputStream in, long bytes) throws IOException {
+        while (bytes > 0) {
+            int skipped = in.skipBytes((int) Math.min(bytes, Integer.MAX_VALUE));
+            if (skipped <= 0) {
+                throw new EOFException();
+            }
+            bytes -= skipped;
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long offset) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, offset + buffer.position()) < 0) {
+                throw new EOFException();
+            }
+        }
+    }
+
+    private static int crc(byte[] body) {
+        CRC32 crc = new CRC32();
+        crc.update(body);
+        return (int) crc.getValue();
+    }
+
+    private static final class Entry {
+        private final long offset;
+        private final int length;
+
+        private Entry(long offset, int length) {
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+
+    private static final class Record {
+        private final byte type;
+        private final boolean deleted;
+        private final String key;
+        private final byte[] payload;
+
+        private Record(byte type, boolean deleted, String key, byte[] payload) {
+            this.type = type;
+            this.deleted = deleted;
+            this.key = key;
+            this.payload = payload;
+        }
+
+        private static byte[] serialize(byte type, byte flags, String key, byte[] payload) throws IOException {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(payload.length + key.length() + 8);
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeByte(type);
+            out.writeByte(flags);
+            out.writeUTF(key);
+            out.write(payload);
+            return bytes.toByteArray();
+        }
+
+        private static Record parse(byte[] body) throws IOException {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(body));
+            byte type = in.readByte();
+            byte flags = in.readByte();
+            String key = in.readUTF();
+
+            byte[] payload = new byte[in.available()];
+            in.readFully(payload);
+            return new Record(type, (flags & FLAG_DELETED) != 0, key, payload);
+        }
+    }
+}
@@ -34,8 +34,13 @@ import me.lucko.luckperms.common.core.model.User;
 import me.lucko.luckperms.common.storage.Storage;
 import me.lucko.luckperms.common.utils.Buffer;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
 
 @RequiredArgsConstructor(access = AccessLevel.PRIVATE)
 public class BufferedOutputStorage implements Storage, Runnable {
@@ -54,6 +59,11 @@ public class BufferedOutputStorage implements Storage, Runnable {
         public Boolean dequeue(User user) {
             return backing.saveUser(user).join();
         }
+
+        @Override
+        protected List<Boolean> dequeueAll(List<User> users) {
+            return dequeueBatch(users, backing::saveUsers);
+        }
     };
 
     private final Buffer<Group, Boolean> groupOutputBuffer = new Buffer<Group, Boolean>() {
@@ -61,6 +71,11 @@ public class BufferedOutputStorage implements Storage, Runnable {
         public Boolean dequeue(Group group) {
             return backing.saveGroup(group).join();
         }
+
+        @Override
+        protected List<Boolean> dequeueAll(List<Group> groups) {
+            return dequeueBatch(groups, backing::saveGroups);
+        }
     };
 
     private final Buffer<Track, Boolean> trackOutputBuffer = new Buffer<Track, Boolean>() {
@@ -77,6 +92,26 @@ public class BufferedOutputStorage implements Storage, Runnable {
         }
     };
 
+    /**
+     * Saves a batch of holders in one call, and maps the holders the batch reports as failed back to their results.
+     * The backing is responsible for any retrying, so nothing is saved twice here.
+     */
+    private static <T> List<Boolean> dequeueBatch(List<T> ts, Function<List<T>, CompletableFuture<Set<T>>> batchSave) {
+        Set<T> failed;
+        try {
+            failed = batchSave.apply(ts).join();
+        } catch (Exception e) {
+            e.printStackTrace();
+            return Collections.nCopies(ts.size(), false);
+        }
+
+        List<Boolean> results = new ArrayList<>(ts.size());
+        for (T t : ts) {
+            results.add(!failed.contains(t));
+        }
+        return results;
+    }
+
     @Override
     public void run() {
         flush(flushTime);
@@ -87,10 +122,11 @@ public class BufferedOutputStorage implements Storage, Runnable {
     }
 
     public void flush(long flushTime) {
+        // uuid data first, so the players row written on a first login exists before the user is saved
+        uuidDataOutputBuffer.flush(flushTime);
         userOutputBuffer.flush(flushTime);
         groupOutputBuffer.flush(flushTime);
         trackOutputBuffer.flush(flushTime);
-        userOutputBuffer.flush(flushTime);
     }
 
     @Override
@@ -37,7 +37,9 @@ import me.lucko.luckperms.common.core.model.User;
 import me.lucko.luckperms.common.data.Log;
 import me.lucko.luckperms.common.storage.Storage;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
@@ -116,6 +118,16 @@ public class TolerantStorage implements Storage {
         }
     }
 
+    @Override
+    public CompletableFuture<Set<User>> saveUsers(Collection<User> users) {
+        phaser.register();
+        try {
+            return backing.saveUsers(users);
+        } finally {
+            phaser.arriveAndDeregister();
+        }
+    }
+
     @Override
     public CompletableFuture<Boolean> cleanupUsers() {
         phaser.register();
@@ -186,6 +198,16 @@ public class TolerantStorage implements Storage {
         }
     }
 
+    @Override
+    public CompletableFuture<Set<Group>> saveGroups(Collection<Group> groups) {
+        phaser.register();
+        try {
+            return backing.saveGroups(groups);
+        } finally {
+            phaser.arriveAndDeregister();
+        }
+    }
+
     @Override
     public CompletableFuture<Boolean> deleteGroup(Group group, DeletionCause cause) {
         phaser.register();
@@ -289,6 +311,7 @@ public class TolerantStorage implements Storage {
     private interface Delegated {
         StorageDelegate getDelegate();
         String getName();
+        Map<String, String> getMeta();
         boolean isAcceptingLogins();
         void setAcceptingLogins(boolean b);
         void init();
@@ -25,34 +25,61 @@ package me.lucko.luckperms.common.tasks;
 import lombok.AllArgsConstructor;
 
 import me.lucko.luckperms.common.core.model.Group;
+import me.lucko.luckperms.common.core.model.PermissionHolder;
 import me.lucko.luckperms.common.core.model.User;
 import me.lucko.luckperms.common.plugin.LuckPermsPlugin;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
 @AllArgsConstructor
 public class ExpireTemporaryTask implements Runnable {
     private final LuckPermsPlugin plugin;
 
     @Override
     public void run() {
-        boolean groupChanges = false;
-        for (Group group : plugin.getGroupManager().getAll().values()) {
-            if (group.auditTemporaryPermissions()) {
-                plugin.getStorage().saveGroup(group);
-                groupChanges = true;
-            }
+        Set<PermissionHolder> expired = plugin.getExpiryIndex().pollExpired(System.currentTimeMillis() / 1000L);
+        if (expired.isEmpty()) {
+            return;
         }
 
-        for (User user : plugin.getUserManager().getAll().values()) {
-            if (user.auditTemporaryPermissions()) {
-                plugin.getStorage().saveUser(user);
-                if (!groupChanges) {
-                    user.getRefreshBuffer().request();
+        boolean groupChanges = false;
+        List<User> userChanges = new ArrayList<>();
+
+        for (PermissionHolder holder : expired) {
+            if (holder instanceof Group) {
+                Group group = (Group) holder;
+
+                // the group may have been unloaded since it was indexed
+                if (plugin.getGroupManager().getIfLoaded(group.getName()) != group) {
+                    continue;
+                }
+
+                if (group.auditTemporaryPermissions()) {
+                    plugin.getStorage().saveGroup(group);
+                    groupChanges = true;
+                }
+            } else if (holder instanceof User) {
+                User user = (User) holder;
+
+                if (plugin.getUserManager().getIfLoaded(user.getId()) != user) {
+                    continue;
+                }
+
+                if (user.auditTemporaryPermissions()) {
+                    plugin.getStorage().saveUser(user);
+                    userChanges.add(user);
                 }
             }
         }
 
         if (groupChanges) {
             plugin.getUpdateTaskBuffer().request();
+        } else {
+            for (User user : userChanges) {
+                user.getRefreshBuffer().request();
+            }
         }
     }
 }
\ No newline at end of file
@@ -28,11 +28,13 @@ import lombok.Getter;
 import lombok.NonNull;
 import lombok.Setter;
 
+import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.ListIterator;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
 
 /**
  * Thread-safe buffer utility. Holds a buffer of objects to be processed after they've been waiting in the buffer
@@ -79,25 +81,54 @@ public abstract class Buffer<T, R> implements Runnable {
 
     protected abstract R dequeue(T t);
 
+    /**
+     * Processes a batch of objects which are due to be flushed together.
+     *
+     * @param ts the objects
+     * @return the results, in the same order as the objects
+     */
+    protected List<R> dequeueAll(List<T> ts) {
+        List<R> results = new ArrayList<>(ts.size());
+        for (T t : ts) {
+            results.add(dequeue(t));
+        }
+        return results;
+    }
+
     public void flush(long flushTime) {
         long time = System.currentTimeMillis();
 
         lock.lock();
         try {
             ListIterator<BufferedObject<T, R>> it = buffer.listIterator(buffer.size());
+            List<BufferedObject<T, R>> toFlush = new ArrayList<>();
 
             while (it.hasPrevious()) {
                 BufferedObject<T, R> obj = it.previous();
                 long bufferedTime = time - obj.getBufferTime();
 
                 if (bufferedTime > flushTime) {
-
-                    // Flush
-                    R r = dequeue(obj.getObject());
-                    obj.getFuture().complete(r);
+                    toFlush.add(obj);
                     it.remove();
                 }
             }
+
+            if (toFlush.isEmpty()) {
+                return;
+            }
+
+            // Flush
+            List<R> results;
+            try {
+                results = dequeueAll(toFlush.stream().map(BufferedObject::getObject).collect(Collectors.toList()));
+            } catch (Throwable t) {
+                // the objects have already left the buffer, so make sure nothing is left waiting on them
+                toFlush.forEach(o -> o.getFuture().completeExceptionally(t));
+                throw t;
+            }
+            for (int i = 0; i < toFlush.size(); i++) {
+                toFlush.get(i).getFuture().complete(results.get(i));
+            }
         } finally {
             lock.unlock();
         }
@@ -22,14 +22,14 @@
 
 package me.lucko.luckperms.common.utils;
 
-import lombok.Getter;
 import lombok.RequiredArgsConstructor;
 
-import java.lang.ref.WeakReference;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.ReentrantLock;
-import java.util.function.Supplier;
 
 /**
  * Thread-safe request buffer.
@@ -37,30 +37,43 @@ import java.util.function.Supplier;
  * Waits for the buffer time to pass before performing the operation. If the task is called again in that time, the
  * buffer time is reset.
  *
+ * No thread is held whilst waiting. Each buffer has at most one pending deadline on a shared timer, and extending
+ * the buffer only moves the deadline forward. Once the deadline passes, the operation is handed to the executor.
+ *
  * @param <T> the return type
  */
 @RequiredArgsConstructor
 public abstract class BufferedRequest<T> {
+    private static final ScheduledExecutorService TIMER;
+    static {
+        ScheduledThreadPoolExecutor timer = new ScheduledThreadPoolExecutor(1, r -> {
+            Thread thread = new Thread(r, "luckperms-buffer-timer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        timer.setKeepAliveTime(30, TimeUnit.SECONDS);
+        timer.allowCoreThreadTimeOut(true);
+        TIMER = timer;
+    }
+
     private final long bufferTimeMillis;
     private final Executor executor;
 
-    private WeakReference<Processor<T>> processor = null;
-    private ReentrantLock lock = new ReentrantLock();
+    private Processor processor = null;
+    private final ReentrantLock lock = new ReentrantLock();
 
     public CompletableFuture<T> request() {
         lock.lock();
         try {
             if (processor != null) {
-                Processor<T> p = processor.get();
-                if (p != null && p.isUsable()) {
-                    return p.getAndExtend();
-                }
+                processor.extend();
+                return processor.getFuture();
             }
 
-            Processor<T> p = new Processor<>(bufferTimeMillis, this::perform);
-            executor.execute(p);
-            processor = new WeakReference<>(p);
-            return p.get();
+            Processor p = new Processor();
+            processor = p;
+            TIMER.schedule(p, bufferTimeMillis, TimeUnit.MILLISECONDS);
+            return p.getFuture();
 
         } finally {
             lock.unlock();
@@ -73,60 +86,47 @@ public abstract class BufferedRequest<T> {
 
     protected abstract T perform();
 
-    @RequiredArgsConstructor
-    private static class Processor<R> implements Runnable {
-        private final long delayMillis;
-        private final Supplier<R> supplier;
-        private final ReentrantLock lock = new ReentrantLock();
-        private final CompletableFuture<R> future = new CompletableFuture<>();
-        @Getter
-        private boolean usable = true;
-        private long executionTime;
+    private final class Processor implements Runnable {
+        private final CompletableFuture<T> future = new CompletableFuture<>();
+        private long executionTime = System.currentTimeMillis() + bufferTimeMillis;
 
+        // called by the timer when the deadline this task was scheduled for has passed
         @Override
         public void run() {
+            long remaining;
             lock.lock();
             try {
-                executionTime = System.currentTimeMillis() + delayMillis;
+                remaining = executionTime - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    // stop accepting extensions, any further requests will start a new buffer
+                    processor = null;
+                }
             } finally {
                 lock.unlock();
             }
 
-            while (true) {
-                lock.lock();
-                try {
-                    if (System.currentTimeMillis() > executionTime) {
-                        usable = false;
-                        break;
-                    }
-
-                } finally {
-                    lock.unlock();
-                }
+            if (remaining > 0) {
+                // the buffer was extended since this task was scheduled
+                TIMER.schedule(this, remaining, TimeUnit.MILLISECONDS);
+                return;
+            }
 
+            executor.execute(() -> {
                 try {
-                    Thread.sleep(500);
-                } catch (InterruptedException e) {
-                    e.printStackTrace();
+                    future.complete(perform());
+                } catch (Throwable t) {
+                    future.completeExceptionally(t);
+                    t.printStackTrace();
                 }
-            }
-
-            R result = supplier.get();
-            future.complete(result);
+            });
         }
 
-        public CompletableFuture<R> get() {
-            return future;
+        // must be called whilst holding the lock
+        private void extend() {
+            executionTime = System.currentTimeMillis() + bufferTimeMillis;
         }
 
-        public CompletableFuture<R> getAndExtend() {
-            lock.lock();
-            try {
-                executionTime = System.currentTimeMillis() + delayMillis;
-            } finally {
-                lock.unlock();
-            }
-
+        private CompletableFuture<T> getFuture() {
             return future;
         }
     }
@@ -42,6 +42,8 @@ import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
 
 public class FileWatcher implements Runnable {
+    public static final String TEMP_FILE_SUFFIX = ".tmp";
+
     private final LuckPermsPlugin plugin;
 
     private final Map<String, WatchedLocation> keyMap;
@@ -117,6 +119,11 @@ public class FileWatcher implements Runnable {
 
                 String fileName = name.toString();
 
+                if (fileName.endsWith(TEMP_FILE_SUFFIX)) {
+                    // Temporary file used to write a data file atomically. The move onto the real file is seen separately.
+                    continue;
+                }
+
                 if (internalChanges.containsKey(id + "/" + fileName)) {
                     // This file was modified by the system.
                     continue;
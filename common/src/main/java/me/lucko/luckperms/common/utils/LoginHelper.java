@@ -50,7 +50,9 @@ public class LoginHelper {
                 // No previous data for this player
                 plugin.getApiProvider().getEventFactory().handleUserFirstLogin(u, username);
                 cache.addToCache(u, u);
-                plugin.getStorage().force().saveUUIDData(username, u);
+
+                // Written back through the output buffer - the mapping is already cached locally.
+                plugin.getStorage().saveUUIDData(username, u);
             }
         } else {
             String name = plugin.getStorage().force().getName(u).join();
@@ -58,8 +60,8 @@ public class LoginHelper {
                 plugin.getApiProvider().getEventFactory().handleUserFirstLogin(u, username);
             }
 
-            // Online mode, no cache needed. This is just for name -> uuid lookup.
-            plugin.getStorage().force().saveUUIDData(username, u);
+            // Online mode, no cache needed. This is just for name -> uuid lookup, so doesn't need to hold up the login.
+            plugin.getStorage().saveUUIDData(username, u);
         }
 
         plugin.getStorage().force().loadUser(cache.getUUID(u), username).join();
@@ -24,156 +24,164 @@ package me.lucko.luckperms.common.utils;
 
 import lombok.experimental.UtilityClass;
 
-import com.google.common.base.Splitter;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.primitives.Ints;
 
 import java.util.ArrayList;
-import java.util.HashSet;
+import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
-import java.util.function.Function;
-import java.util.stream.Collectors;
-import java.util.stream.IntStream;
 
+/**
+ * Expands shorthand permissions, such as <code>kit.(1-50)</code>, <code>essentials.{warp,home}</code> or
+ * <code>plot.(a-e).claim</code>.
+ *
+ * <p>Strings are expanded in a single left-to-right pass, and the expansions of each string are memoized in a shared,
+ * bounded cache.</p>
+ */
 @UtilityClass
 public class ShorthandParser {
-    private static final List<Function<String, List<String>>> PARSERS = ImmutableList.<Function<String, List<String>>>builder()
-            .add(new ListParser())
-            .add(new CharacterRangeParser())
-            .add(new NumericRangeParser())
-            .build();
+
+    /**
+     * The maximum total number of expanded strings held in the cache
+     */
+    private static final int CACHE_WEIGHT = 100_000;
+
+    private static final LoadingCache<String, ImmutableSet<String>> CACHE = Caffeine.newBuilder()
+            .maximumWeight(CACHE_WEIGHT)
+            .weigher((String s, ImmutableSet<String> expanded) -> expanded.size() + 1)
+            .build(ShorthandParser::expand);
 
     public static Set<String> parseShorthand(String s) {
         return parseShorthand(s, true);
     }
 
     public static Set<String> parseShorthand(String s, boolean removeSelf) {
-        Set<String> results = new HashSet<>();
-        results.add(s);
-
-        while (true) {
-            Set<String> working = new HashSet<>();
-            int beforeSize = results.size();
-
-            for (String str : results) {
-                Set<String> ret = captureResults(str);
-                if (ret != null) {
-                    working.addAll(ret);
-                } else {
-                    working.add(str);
-                }
-            }
-
-            if (working.size() != beforeSize) {
-                results = working;
-                continue;
-            }
-
-            break;
+        // fast path - the vast majority of permissions don't contain any shorthand
+        if (s.indexOf('{') == -1 && s.indexOf('(') == -1) {
+            return removeSelf ? ImmutableSet.of() : ImmutableSet.of(s);
         }
 
-        if (removeSelf) {
-            results.remove(s);
+        ImmutableSet<String> results = CACHE.get(s);
+        if (removeSelf && results.contains(s)) {
+            return results.stream().filter(r -> !r.equals(s)).collect(ImmutableCollectors.toImmutableSet());
         }
-
         return results;
     }
 
-    private static Set<String> captureResults(String s) {
-        s = s.replace('(', '{').replace(')', '}');
+    private static ImmutableSet<String> expand(String s) {
+        List<String> results = Collections.singletonList("");
+        int position = 0;
 
-        int openingIndex = s.indexOf('{');
-        if (openingIndex == -1) {
-            return null;
-        }
-
-        int closingIndex = s.indexOf('}');
-        if (closingIndex < openingIndex) {
-            return null;
-        }
+        while (true) {
+            int open = indexOfOpening(s, position);
+            if (open == -1) {
+                break;
+            }
 
-        String before = s.substring(0, openingIndex);
-        String after = s.substring(closingIndex + 1);
-        String between = s.substring(openingIndex + 1, closingIndex);
+            int close = indexOfClosing(s, open + 1);
+            if (close == -1) {
+                break;
+            }
 
-        Set<String> results = new HashSet<>();
+            List<String> alternatives = parseGroup(s.substring(open + 1, close));
+            if (alternatives.isEmpty()) {
+                // the group couldn't be parsed
+                return ImmutableSet.of();
+            }
 
-        for (Function<String, List<String>> parser : PARSERS) {
-            List<String> res = parser.apply(between);
-            if (res != null) {
-                for (String r : res) {
-                    results.add(before + r + after);
+            String literal = s.substring(position, open);
+            List<String> working = new ArrayList<>(results.size() * alternatives.size());
+            for (String result : results) {
+                String prefix = result + literal;
+                for (String alternative : alternatives) {
+                    working.add(prefix + alternative);
                 }
             }
-        }
 
-        return results;
-    }
+            results = working;
+            position = close + 1;
+        }
 
-    private static class ListParser implements Function<String, List<String>> {
+        if (position == 0) {
+            return ImmutableSet.of(s);
+        }
 
-        @Override
-        public List<String> apply(String s) {
-            s = s.replace('|', ',');
-            if (!s.contains(",")) {
-                return null;
-            }
-            return Splitter.on(',').splitToList(s);
+        String remaining = s.substring(position);
+        ImmutableSet.Builder<String> ret = ImmutableSet.builder();
+        for (String result : results) {
+            ret.add(result + remaining);
         }
+        return ret.build();
     }
 
-    private static class NumericRangeParser implements Function<String, List<String>> {
-
-        private static boolean isInt(String a) {
-            try {
-                Integer.parseInt(a);
-                return true;
-            } catch (NumberFormatException e) {
-                return false;
+    private static int indexOfOpening(String s, int from) {
+        for (int i = from; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '{' || c == '(') {
+                return i;
             }
         }
+        return -1;
+    }
 
-        @Override
-        public List<String> apply(String s) {
-            int index = s.indexOf("-");
-            if (index == -1) {
-                return null;
-            }
-            String before = s.substring(0, index);
-            String after = s.substring(index + 1);
-
-            if (isInt(before) && isInt(after)) {
-                return IntStream.rangeClosed(Integer.parseInt(before), Integer.parseInt(after))
-                        .boxed().map(i -> "" + i).collect(Collectors.toList());
+    private static int indexOfClosing(String s, int from) {
+        for (int i = from; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '}' || c == ')') {
+                return i;
             }
-            return null;
         }
+        return -1;
     }
 
-    private static class CharacterRangeParser implements Function<String, List<String>> {
-
-        private static List<String> getCharRange(char a, char b) {
-            List<String> s = new ArrayList<>();
-            for (char c = a; c <= b; c++) {
-                s.add(Character.toString(c));
+    /**
+     * Parses the contents of a single shorthand group, e.g. <code>a,b,c</code>, <code>1-50</code> or <code>a-e</code>.
+     *
+     * @param s the contents of the group, excluding the brackets
+     * @return the alternatives the group expands to, or an empty list if the group is invalid
+     */
+    private static List<String> parseGroup(String s) {
+        Set<String> results = new LinkedHashSet<>();
+
+        // lists
+        if (s.indexOf(',') != -1 || s.indexOf('|') != -1) {
+            int start = 0;
+            for (int i = 0; i <= s.length(); i++) {
+                if (i == s.length() || s.charAt(i) == ',' || s.charAt(i) == '|') {
+                    results.add(s.substring(start, i));
+                    start = i + 1;
+                }
             }
-            return s;
         }
 
-        @Override
-        public List<String> apply(String s) {
-            int index = s.indexOf("-");
-            if (index == -1) {
-                return null;
-            }
+        int index = s.indexOf('-');
+        if (index != -1) {
             String before = s.substring(0, index);
             String after = s.substring(index + 1);
 
+            // character ranges
             if (before.length() == 1 && after.length() == 1) {
-                return getCharRange(before.charAt(0), after.charAt(0));
+                for (char c = before.charAt(0); c <= after.charAt(0); c++) {
+                    results.add(Character.toString(c));
+                }
+            }
+
+            // numeric ranges
+            Integer from = Ints.tryParse(before);
+            Integer to = Ints.tryParse(after);
+            if (from != null && to != null) {
+                for (long i = from; i <= to; i++) {
+                    results.add(Long.toString(i));
+                }
             }
-            return null;
         }
+
+        return ImmutableList.copyOf(results);
     }
 
 }
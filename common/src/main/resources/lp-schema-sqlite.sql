@@ -1,30 +1,32 @@
 -- LuckPerms SQLite Schema
 
 CREATE TABLE `{prefix}user_permissions` (
-  `id`         INTEGER PRIMARY KEY NOT NULL,
-  `uuid`       VARCHAR(36)         NOT NULL,
-  `permission` VARCHAR(200)        NOT NULL,
-  `value`      BOOL                NOT NULL,
-  `server`     VARCHAR(36)         NOT NULL,
-  `world`      VARCHAR(36)         NOT NULL,
-  `expiry`     INT(11)             NOT NULL,
-  `contexts`   VARCHAR(200)        NOT NULL
+  `id`          INTEGER PRIMARY KEY NOT NULL,
+  `uuid`        VARCHAR(36)         NOT NULL,
+  `permission`  VARCHAR(200)        NOT NULL,
+  `value`       BOOL                NOT NULL,
+  `server`      VARCHAR(64)         NOT NULL,
+  `world`       VARCHAR(64)         NOT NULL,
+  `expiry`      BIGINT              NOT NULL,
+  `contexts`    VARCHAR(200)        NOT NULL,
+  `context_key` CHAR(32)            NOT NULL
 );
-CREATE INDEX `{prefix}user_permissions_uuid` ON `{prefix}user_permissions` (`uuid`);
-CREATE INDEX `{prefix}user_permissions_permission` ON `{prefix}user_permissions` (`permission`);
+CREATE INDEX `{prefix}user_permissions_holder` ON `{prefix}user_permissions` (`uuid`, `permission`, `context_key`);
+CREATE INDEX `{prefix}user_permissions_lookup` ON `{prefix}user_permissions` (`permission`, `uuid`);
 
 CREATE TABLE `{prefix}group_permissions` (
-  `id`         INTEGER PRIMARY KEY NOT NULL,
-  `name`       VARCHAR(36)         NOT NULL,
-  `permission` VARCHAR(200)        NOT NULL,
-  `value`      BOOL                NOT NULL,
-  `server`     VARCHAR(36)         NOT NULL,
-  `world`      VARCHAR(36)         NOT NULL,
-  `expiry`     INT(11)             NOT NULL,
-  `contexts`   VARCHAR(200)        NOT NULL
+  `id`          INTEGER PRIMARY KEY NOT NULL,
+  `name`        VARCHAR(36)         NOT NULL,
+  `permission`  VARCHAR(200)        NOT NULL,
+  `value`       BOOL                NOT NULL,
+  `server`      VARCHAR(64)         NOT NULL,
+  `world`       VARCHAR(64)         NOT NULL,
+  `expiry`      BIGINT              NOT NULL,
+  `contexts`    VARCHAR(200)        NOT NULL,
+  `context_key` CHAR(32)            NOT NULL
 );
-CREATE INDEX `{prefix}group_permissions_name` ON `{prefix}group_permissions` (`name`);
-CREATE INDEX `{prefix}group_permissions_permission` ON `{prefix}group_permissions` (`permission`);
+CREATE INDEX `{prefix}group_permissions_holder` ON `{prefix}group_permissions` (`name`, `permission`, `context_key`);
+CREATE INDEX `{prefix}group_permissions_lookup` ON `{prefix}group_permissions` (`permission`, `name`);
 
 CREATE TABLE `{prefix}players` (
   `uuid`          VARCHAR(36) NOT NULL,
@@ -54,4 +56,9 @@ CREATE TABLE `{prefix}tracks` (
   `name`   VARCHAR(36) NOT NULL,
   `groups` TEXT        NOT NULL,
   PRIMARY KEY (`name`)
-);
\ No newline at end of file
+);
+
+CREATE TABLE `{prefix}schema_version` (
+  `version` INT NOT NULL
+);
+INSERT INTO `{prefix}schema_version` VALUES(2);
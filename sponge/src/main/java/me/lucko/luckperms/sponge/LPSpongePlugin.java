@@ -32,7 +32,6 @@ import me.lucko.luckperms.api.PlatformType;
 import me.lucko.luckperms.common.api.ApiHandler;
 import me.lucko.luckperms.common.api.ApiProvider;
 import me.lucko.luckperms.common.caching.handlers.CachedStateManager;
-import me.lucko.luckperms.common.calculators.CalculatorFactory;
 import me.lucko.luckperms.common.commands.abstraction.Command;
 import me.lucko.luckperms.common.commands.sender.Sender;
 import me.lucko.luckperms.common.config.ConfigKeys;
@@ -40,6 +39,7 @@ import me.lucko.luckperms.common.config.LuckPermsConfiguration;
 import me.lucko.luckperms.common.constants.Permission;
 import me.lucko.luckperms.common.contexts.ContextManager;
 import me.lucko.luckperms.common.contexts.StaticCalculator;
+import me.lucko.luckperms.common.core.ExpiryIndex;
 import me.lucko.luckperms.common.core.UuidCache;
 import me.lucko.luckperms.common.core.model.User;
 import me.lucko.luckperms.common.dependencies.DependencyManager;
@@ -156,8 +156,9 @@ public class LPSpongePlugin implements LuckPermsPlugin {
     private LuckPermsService service;
     private LocaleManager localeManager;
     private CachedStateManager cachedStateManager;
+    private ExpiryIndex expiryIndex;
     private ContextManager<Subject> contextManager;
-    private CalculatorFactory calculatorFactory;
+    private SpongeCalculatorFactory calculatorFactory;
     private BufferedRequest<Void> updateTaskBuffer;
     private VerboseHandler verboseHandler;
     private SpongeSenderFactory senderFactory;
@@ -263,6 +264,7 @@ public class LPSpongePlugin implements LuckPermsPlugin {
         trackManager = new GenericTrackManager(this);
         calculatorFactory = new SpongeCalculatorFactory(this);
         cachedStateManager = new CachedStateManager(this);
+        expiryIndex = new ExpiryIndex();
 
         contextManager = new ContextManager<>();
         contextManager.registerCalculator(new StaticCalculator<>(configuration));
@@ -318,6 +320,13 @@ public class LPSpongePlugin implements LuckPermsPlugin {
 
     @Listener
     public void onDisable(GameStoppingServerEvent event) {
+        if (service != null) {
+            getLog().info("Saving local subject data...");
+            if (!service.getStorage().shutdown()) {
+                getLog().warn("Timed out whilst saving local subject data. Some changes may not have been saved.");
+            }
+        }
+
         getLog().info("Closing datastore...");
         storage.shutdown();
 
@@ -34,6 +34,7 @@ import me.lucko.luckperms.common.calculators.processors.MapProcessor;
 import me.lucko.luckperms.common.calculators.processors.RegexProcessor;
 import me.lucko.luckperms.common.calculators.processors.WildcardProcessor;
 import me.lucko.luckperms.common.config.ConfigKeys;
+import me.lucko.luckperms.common.core.model.Group;
 import me.lucko.luckperms.common.core.model.User;
 import me.lucko.luckperms.sponge.calculators.DefaultsProcessor;
 import me.lucko.luckperms.sponge.calculators.SpongeWildcardProcessor;
@@ -45,6 +46,28 @@ public class SpongeCalculatorFactory extends AbstractCalculatorFactory {
     @Override
     public PermissionCalculator build(Contexts contexts, User user) {
         ImmutableList.Builder<PermissionProcessor> processors = ImmutableList.builder();
+        addCommonProcessors(processors);
+        processors.add(new DefaultsProcessor(plugin.getService(), contexts.getContexts()));
+
+        return registerCalculator(new PermissionCalculator(plugin, user.getName(), processors.build()));
+    }
+
+    /**
+     * Builds a calculator for a group subject. Defaults are not applied here, as group subjects
+     * fall back to the default subjects themselves.
+     *
+     * @param contexts the contexts to build the calculator in
+     * @param group the group to build for
+     * @return a permission calculator instance
+     */
+    public PermissionCalculator buildForGroup(Contexts contexts, Group group) {
+        ImmutableList.Builder<PermissionProcessor> processors = ImmutableList.builder();
+        addCommonProcessors(processors);
+
+        return registerCalculator(new PermissionCalculator(plugin, "group/" + group.getObjectName(), processors.build()));
+    }
+
+    private void addCommonProcessors(ImmutableList.Builder<PermissionProcessor> processors) {
         processors.add(new MapProcessor());
         processors.add(new SpongeWildcardProcessor());
         if (plugin.getConfiguration().get(ConfigKeys.APPLYING_REGEX)) {
@@ -53,8 +76,5 @@ public class SpongeCalculatorFactory extends AbstractCalculatorFactory {
         if (plugin.getConfiguration().get(ConfigKeys.APPLYING_WILDCARDS)) {
             processors.add(new WildcardProcessor());
         }
-        processors.add(new DefaultsProcessor(plugin.getService(), contexts.getContexts()));
-
-        return registerCalculator(new PermissionCalculator(plugin, user.getName(), processors.build()));
     }
 }
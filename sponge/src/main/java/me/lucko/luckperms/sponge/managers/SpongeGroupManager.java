@@ -126,7 +126,10 @@ public class SpongeGroupManager implements GroupManager, LPSubjectCollection {
     @Override
     public void unload(String id) {
         if (id != null) {
-            objects.invalidate(id.toLowerCase());
+            SpongeGroup group = objects.asMap().remove(id.toLowerCase());
+            if (group != null) {
+                plugin.getExpiryIndex().remove(group);
+            }
         }
     }
 
@@ -139,6 +142,7 @@ public class SpongeGroupManager implements GroupManager, LPSubjectCollection {
 
     @Override
     public void unloadAll() {
+        objects.asMap().values().forEach(plugin.getExpiryIndex()::remove);
         objects.invalidateAll();
     }
 
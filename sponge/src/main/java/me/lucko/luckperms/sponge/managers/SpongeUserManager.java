@@ -33,10 +33,12 @@ import com.google.common.collect.ImmutableMap;
 import me.lucko.luckperms.api.Tristate;
 import me.lucko.luckperms.api.context.ContextSet;
 import me.lucko.luckperms.common.commands.utils.Util;
+import me.lucko.luckperms.common.config.ConfigKeys;
 import me.lucko.luckperms.common.core.UserIdentifier;
 import me.lucko.luckperms.common.core.model.User;
 import me.lucko.luckperms.common.managers.UserManager;
 import me.lucko.luckperms.common.managers.impl.GenericUserManager;
+import me.lucko.luckperms.common.utils.BufferedRequest;
 import me.lucko.luckperms.common.utils.ImmutableCollectors;
 import me.lucko.luckperms.sponge.LPSpongePlugin;
 import me.lucko.luckperms.sponge.model.SpongeUser;
@@ -50,8 +52,10 @@ import org.spongepowered.api.service.permission.PermissionService;
 
 import co.aikar.timings.Timing;
 
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashSet;
+import java.util.Comparator;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
@@ -75,6 +79,14 @@ public class SpongeUserManager implements UserManager, LPSubjectCollection {
                 }
             });
 
+    private final BufferedRequest<Void> cleanupBuffer = new BufferedRequest<Void>(1000L, r -> SpongeUserManager.this.plugin.doAsync(r)) {
+        @Override
+        protected Void perform() {
+            performCleanup();
+            return null;
+        }
+    };
+
     private final LoadingCache<UUID, LPSubject> subjectLoadingCache = Caffeine.<UUID, LPSubject>newBuilder()
             .expireAfterWrite(1, TimeUnit.MINUTES)
             .build(u -> {
@@ -82,7 +94,7 @@ public class SpongeUserManager implements UserManager, LPSubjectCollection {
 
                     SpongeUser user = get(u);
                     if (user.getUserData() == null) {
-                        user.setupData(false);
+                        user.setupData(false, false);
                     }
 
                     return get(u).getSpongeData();
@@ -97,12 +109,14 @@ public class SpongeUserManager implements UserManager, LPSubjectCollection {
                     throw new RuntimeException();
                 }
 
-                user.setupData(false);
+                // only calculate what's actually requested - most of these lookups are for offline users
+                user.setupData(false, false);
 
                 if (user.getUserData() == null) {
                     getPlugin().getLog().warn("User data not present for requested user id: " + u);
                 }
 
+                cleanupBuffer.request();
                 return user.getSpongeData();
             });
 
@@ -117,16 +131,53 @@ public class SpongeUserManager implements UserManager, LPSubjectCollection {
                 new SpongeUser(id.getUuid(), id.getUsername(), plugin);
     }
 
+    /**
+     * Unloads offline users which have been idle for too long, and then the least recently used
+     * offline users until the rest fit within the configured node budget.
+     */
     public void performCleanup() {
-        Set<UserIdentifier> set = new HashSet<>();
-        for (Map.Entry<UserIdentifier, SpongeUser> user : objects.asMap().entrySet()) {
-            if (user.getValue().getSpongeData().shouldCleanup()) {
-                user.getValue().unregisterData();
-                set.add(user.getKey());
+        long idleTime = TimeUnit.MINUTES.toMillis(plugin.getConfiguration().get(ConfigKeys.OFFLINE_USERS_IDLE_MINUTES));
+        int budget = plugin.getConfiguration().get(ConfigKeys.OFFLINE_USERS_NODE_BUDGET);
+        long now = System.currentTimeMillis();
+
+        List<SpongeUser> offline = new ArrayList<>();
+        int weight = 0;
+
+        for (SpongeUser user : objects.asMap().values()) {
+            if (plugin.isPlayerOnline(plugin.getUuidCache().getExternalUUID(user.getUuid()))) {
+                continue;
+            }
+
+            if (now - user.getSpongeData().getLastUse() > idleTime) {
+                evict(user);
+                continue;
+            }
+
+            offline.add(user);
+            weight += user.getSpongeData().getWeight();
+        }
+
+        if (weight <= budget) {
+            return;
+        }
+
+        offline.sort(Comparator.comparingLong(u -> u.getSpongeData().getLastUse()));
+        for (SpongeUser user : offline) {
+            if (weight <= budget) {
+                break;
             }
+
+            weight -= user.getSpongeData().getWeight();
+            evict(user);
         }
+    }
 
-        objects.invalidateAll(set);
+    private void evict(SpongeUser user) {
+        if (objects.asMap().remove(user.getId(), user)) {
+            user.unregisterData();
+            plugin.getExpiryIndex().remove(user);
+        }
+        subjectLoadingCache.invalidate(user.getUuid());
     }
 
     /* ------------------------------------------
@@ -156,7 +207,10 @@ public class SpongeUserManager implements UserManager, LPSubjectCollection {
     @Override
     public void unload(UserIdentifier id) {
         if (id != null) {
-            objects.invalidate(id);
+            SpongeUser user = objects.asMap().remove(id);
+            if (user != null) {
+                plugin.getExpiryIndex().remove(user);
+            }
         }
     }
 
@@ -169,6 +223,7 @@ public class SpongeUserManager implements UserManager, LPSubjectCollection {
 
     @Override
     public void unloadAll() {
+        objects.asMap().values().forEach(plugin.getExpiryIndex()::remove);
         objects.invalidateAll();
     }
 
@@ -273,10 +328,15 @@ public class SpongeUserManager implements UserManager, LPSubjectCollection {
 
     @Override
     public Map<LPSubject, Boolean> getWithPermission(@NonNull ContextSet contexts, @NonNull String node) {
-        return objects.asMap().values().stream()
-                .map(SpongeUser::getSpongeData)
-                .filter(sub -> sub.getPermissionValue(contexts, node) != Tristate.UNDEFINED)
-                .collect(ImmutableCollectors.toImmutableMap(sub -> sub, sub -> sub.getPermissionValue(contexts, node).asBoolean()));
+        ImmutableMap.Builder<LPSubject, Boolean> m = ImmutableMap.builder();
+        for (SpongeUser user : objects.asMap().values()) {
+            SpongeUser.UserSubject subject = user.getSpongeData();
+            Tristate ts = subject.peekPermissionValue(contexts, node);
+            if (ts != Tristate.UNDEFINED) {
+                m.put(subject, ts.asBoolean());
+            }
+        }
+        return m.build();
     }
 
     @Override
@@ -26,30 +26,33 @@ import lombok.Getter;
 
 import com.github.benmanes.caffeine.cache.Caffeine;
 import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 
+import me.lucko.luckperms.api.Contexts;
 import me.lucko.luckperms.api.LocalizedNode;
 import me.lucko.luckperms.api.Node;
 import me.lucko.luckperms.api.Tristate;
 import me.lucko.luckperms.api.context.ContextSet;
 import me.lucko.luckperms.common.caching.MetaAccumulator;
+import me.lucko.luckperms.common.caching.PermissionCache;
 import me.lucko.luckperms.common.core.model.Group;
 import me.lucko.luckperms.common.utils.ExtractedContexts;
 import me.lucko.luckperms.sponge.LPSpongePlugin;
 import me.lucko.luckperms.sponge.service.LuckPermsService;
 import me.lucko.luckperms.sponge.service.LuckPermsSubjectData;
+import me.lucko.luckperms.sponge.service.calculated.SubjectInheritance;
 import me.lucko.luckperms.sponge.service.proxy.LPSubject;
-import me.lucko.luckperms.sponge.service.proxy.Util;
 import me.lucko.luckperms.sponge.service.references.SubjectCollectionReference;
 import me.lucko.luckperms.sponge.service.references.SubjectReference;
 import me.lucko.luckperms.sponge.timings.LPTiming;
 
 import org.spongepowered.api.command.CommandSource;
-import org.spongepowered.api.service.permission.NodeTree;
 import org.spongepowered.api.service.permission.PermissionService;
 
 import co.aikar.timings.Timing;
 
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
@@ -80,15 +83,12 @@ public class SpongeGroup extends Group {
         @Getter
         private final LuckPermsSubjectData transientSubjectData;
 
-        private final LoadingCache<ContextSet, NodeTree> permissionCache = Caffeine.newBuilder()
+        private final LoadingCache<Contexts, PermissionCache> permissionCache = Caffeine.newBuilder()
                 .expireAfterAccess(10, TimeUnit.MINUTES)
                 .build(contexts -> {
-                    // TODO move this away from NodeTree
-                    Map<String, Boolean> permissions = getParent().getAllNodes(ExtractedContexts.generate(getPlugin().getService().calculateContexts(contexts))).stream()
-                            .map(LocalizedNode::getNode)
-                            .collect(Collectors.toMap(Node::getPermission, Node::getValue));
-
-                    return NodeTree.of(permissions);
+                    PermissionCache data = new PermissionCache(getPlugin().getCalculatorFactory().buildForGroup(contexts, getParent()));
+                    data.setPermissions(getParent().exportNodes(ExtractedContexts.generate(contexts), true));
+                    return data;
                 });
 
         private final LoadingCache<ContextSet, Set<SubjectReference>> parentCache = Caffeine.newBuilder()
@@ -108,24 +108,37 @@ public class SpongeGroup extends Group {
                     return ImmutableSet.copyOf(subjects);
                 });
 
+        private final LoadingCache<ContextSet, Set<SubjectReference>> inheritanceCache = Caffeine.newBuilder()
+                .expireAfterAccess(10, TimeUnit.MINUTES)
+                .build(contexts -> SubjectInheritance.flatten(this, contexts));
+
         private GroupSubject(LPSpongePlugin plugin, SpongeGroup parent) {
             this.parent = parent;
             this.plugin = plugin;
             this.subjectData = new LuckPermsSubjectData(true, plugin.getService(), parent, this);
             this.transientSubjectData = new LuckPermsSubjectData(false, plugin.getService(), parent, this);
 
-            parent.getStateListeners().add(this::invalidateCaches);
+            parent.getStateListeners().add(this::onStateChange);
+        }
+
+        private void onStateChange() {
+            invalidateCaches();
+
+            // local subjects may inherit from this group
+            plugin.getService().invalidateParentCaches(toReference());
         }
 
         public void invalidateCaches() {
             permissionCache.invalidateAll();
             parentCache.invalidateAll();
+            inheritanceCache.invalidateAll();
         }
 
         @Override
         public void performCleanup() {
             permissionCache.cleanUp();
             parentCache.cleanUp();
+            inheritanceCache.cleanUp();
         }
 
         @Override
@@ -156,22 +169,35 @@ public class SpongeGroup extends Group {
         @Override
         public Tristate getPermissionValue(ContextSet contexts, String permission) {
             try (Timing ignored = plugin.getTimings().time(LPTiming.GROUP_GET_PERMISSION_VALUE)) {
-                NodeTree nt = permissionCache.get(contexts);
-                Tristate t = Util.convertTristate(nt.get(permission));
+                Tristate t = getOwnPermissionValue(contexts, permission);
                 if (t != Tristate.UNDEFINED) {
                     return t;
                 }
 
-                t = plugin.getService().getGroupSubjects().getDefaultSubject().resolve(getService()).getPermissionValue(contexts, permission);
-                if (t != Tristate.UNDEFINED) {
-                    return t;
+                for (SubjectReference ref : inheritanceCache.get(contexts)) {
+                    t = ref.resolve(getService()).getOwnPermissionValue(contexts, permission);
+                    if (t != Tristate.UNDEFINED) {
+                        return t;
+                    }
                 }
 
-                t = plugin.getService().getDefaults().getPermissionValue(contexts, permission);
-                return t;
+                return Tristate.UNDEFINED;
             }
         }
 
+        @Override
+        public Tristate getOwnPermissionValue(ContextSet contexts, String permission) {
+            return permissionCache.get(plugin.getService().calculateContexts(contexts)).getPermissionValue(permission);
+        }
+
+        @Override
+        public List<SubjectReference> getFallbackOrder(ContextSet contexts) {
+            return ImmutableList.of(
+                    plugin.getService().getGroupSubjects().getDefaultSubject(),
+                    plugin.getService().getDefaults().toReference()
+            );
+        }
+
         @Override
         public boolean isChildOf(ContextSet contexts, SubjectReference parent) {
             try (Timing ignored = plugin.getTimings().time(LPTiming.GROUP_IS_CHILD_OF)) {
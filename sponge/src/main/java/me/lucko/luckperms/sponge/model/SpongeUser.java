@@ -74,7 +74,8 @@ public class SpongeUser extends User {
         @Getter
         private final LuckPermsSubjectData transientSubjectData;
 
-        private long lastUse = System.currentTimeMillis();
+        @Getter
+        private volatile long lastUse = System.currentTimeMillis();
 
         private UserSubject(LPSpongePlugin plugin, SpongeUser parent) {
             this.parent = parent;
@@ -87,10 +88,13 @@ public class SpongeUser extends User {
             lastUse = System.currentTimeMillis();
         }
 
-        public boolean shouldCleanup() {
-            long now = System.currentTimeMillis();
-            // Expire after 10 minutes of idle
-            return (now - lastUse) > 600000;
+        /**
+         * Gets a rough measure of how much memory this subject holds, used to budget offline users.
+         *
+         * @return the weight of this subject
+         */
+        public int getWeight() {
+            return parent.getNodes().size() + parent.getTransientNodes().size() + 1;
         }
 
         private synchronized void checkData() {
@@ -130,6 +134,18 @@ public class SpongeUser extends User {
         @Override
         public Tristate getPermissionValue(ContextSet contexts, String permission) {
             logUsage();
+            return peekPermissionValue(contexts, permission);
+        }
+
+        /**
+         * Gets a permission value without counting as a use of this subject, so bulk queries over
+         * every loaded user don't keep offline users loaded.
+         *
+         * @param contexts the contexts to check in
+         * @param permission the permission
+         * @return the value
+         */
+        public Tristate peekPermissionValue(ContextSet contexts, String permission) {
             try (Timing ignored = plugin.getTimings().time(LPTiming.USER_GET_PERMISSION_VALUE)) {
                 checkData();
                 return parent.getUserData().getPermissionData(plugin.getService().calculateContexts(contexts)).getPermissionValue(permission);
@@ -57,6 +57,7 @@ import me.lucko.luckperms.sponge.service.calculated.OptionLookup;
 import me.lucko.luckperms.sponge.service.calculated.PermissionLookup;
 import me.lucko.luckperms.sponge.service.legacystorage.LegacyDataMigrator;
 import me.lucko.luckperms.sponge.service.persisted.PersistedCollection;
+import me.lucko.luckperms.sponge.service.persisted.PersistedSubject;
 import me.lucko.luckperms.sponge.service.proxy.LPSubject;
 import me.lucko.luckperms.sponge.service.proxy.LPSubjectCollection;
 import me.lucko.luckperms.sponge.service.proxy.LPSubjectData;
@@ -105,6 +106,7 @@ public class LuckPermsService implements PermissionService {
     private final Set<LoadingCache<ImmutableContextSet, Set<SubjectReference>>> localParentCaches;
     private final Set<LoadingCache<OptionLookup, Optional<String>>> localOptionCaches;
     private final Set<CalculatedSubjectData> localDataCaches;
+    private final SubjectDependencyGraph dependencyGraph;
 
     @Getter(value = AccessLevel.NONE)
     private final LoadingCache<String, LPSubjectCollection> collections = Caffeine.newBuilder()
@@ -127,6 +129,7 @@ public class LuckPermsService implements PermissionService {
         localParentCaches = Collections.newSetFromMap(new MapMaker().weakKeys().makeMap());
         localOptionCaches = Collections.newSetFromMap(new MapMaker().weakKeys().makeMap());
         localDataCaches = Collections.newSetFromMap(new MapMaker().weakKeys().makeMap());
+        dependencyGraph = new SubjectDependencyGraph();
 
         storage = new SubjectStorage(new File(plugin.getDataDirectory(), "sponge-data"));
         new LegacyDataMigrator(plugin, new File(plugin.getDataDirectory(), "local"), storage).run();
@@ -308,6 +311,83 @@ public class LuckPermsService implements PermissionService {
         }
     }
 
+    /**
+     * Invalidates the permission lookups of the given subject, and of any subjects which inherit from it.
+     *
+     * @param subject the subject which changed
+     */
+    public void invalidatePermissionCaches(SubjectReference subject) {
+        Set<SubjectReference> affected = dependencyGraph.getAffected(subject);
+        if (affectsDefaults(affected)) {
+            invalidatePermissionCaches();
+            return;
+        }
+
+        for (PersistedSubject s : getLoadedPersistedSubjects(affected)) {
+            s.invalidatePermissionLookups();
+        }
+    }
+
+    /**
+     * Invalidates the parent, option and permission lookups of the given subject, and of any subjects
+     * which inherit from it.
+     *
+     * @param subject the subject which changed
+     */
+    public void invalidateParentCaches(SubjectReference subject) {
+        Set<SubjectReference> affected = dependencyGraph.getAffected(subject);
+        if (affectsDefaults(affected)) {
+            invalidateParentCaches();
+            return;
+        }
+
+        for (PersistedSubject s : getLoadedPersistedSubjects(affected)) {
+            s.invalidateParentLookups();
+            s.invalidateOptionLookups();
+            s.invalidatePermissionLookups();
+        }
+    }
+
+    /**
+     * Invalidates the option lookups of the given subject, and of any subjects which inherit from it.
+     *
+     * @param subject the subject which changed
+     */
+    public void invalidateOptionCaches(SubjectReference subject) {
+        Set<SubjectReference> affected = dependencyGraph.getAffected(subject);
+        if (affectsDefaults(affected)) {
+            invalidateOptionCaches();
+            return;
+        }
+
+        for (PersistedSubject s : getLoadedPersistedSubjects(affected)) {
+            s.invalidateOptionLookups();
+        }
+    }
+
+    // Every subject implicitly falls back to the "defaults" collection, so a change there still has to reach everything.
+    private static boolean affectsDefaults(Set<SubjectReference> affected) {
+        for (SubjectReference s : affected) {
+            if (s.getCollection().equalsIgnoreCase("defaults")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private List<PersistedSubject> getLoadedPersistedSubjects(Set<SubjectReference> references) {
+        List<PersistedSubject> subjects = new ArrayList<>(references.size());
+        for (SubjectReference ref : references) {
+            LPSubjectCollection collection = collections.getIfPresent(ref.getCollection().toLowerCase());
+            if (!(collection instanceof PersistedCollection) || !collection.hasRegistered(ref.getIdentifier())) {
+                continue;
+            }
+
+            subjects.add(((PersistedCollection) collection).get(ref.getIdentifier()));
+        }
+        return subjects;
+    }
+
     @RequiredArgsConstructor
     @EqualsAndHashCode
     @ToString
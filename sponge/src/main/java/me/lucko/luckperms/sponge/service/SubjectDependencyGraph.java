@@ -0,0 +1,140 @@
+/*
+ * Copyright (c) 2016 Lucko (Luck) <luck@lucko.me>
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.luckperms.sponge.service;
+
+import me.lucko.luckperms.api.context.ImmutableContextSet;
+import me.lucko.luckperms.sponge.service.references.SubjectReference;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Tracks which subjects inherit from which, so a change to one subject only has to invalidate the
+ * caches of the subjects which actually depend on it.
+ *
+ * <p>Edges are recorded whenever a subject resolves its parents in a given context, replacing the
+ * parents it previously resolved in that context. A subject's edges are dropped when it is unloaded.
+ * A subject which resolved a parent in one context keeps the edge as long as it still resolves that
+ * parent in any other context.</p>
+ */
+public class SubjectDependencyGraph {
+
+    // subject --> the parents it resolved, in each context it has resolved them in
+    private final Map<SubjectReference, Map<ImmutableContextSet, Set<SubjectReference>>> parents = new ConcurrentHashMap<>();
+
+    // parent --> the subjects which have resolved it as a parent
+    private final Map<SubjectReference, Set<SubjectReference>> dependents = new ConcurrentHashMap<>();
+
+    public synchronized void recordParents(SubjectReference subject, ImmutableContextSet contexts, Set<SubjectReference> parents) {
+        Map<ImmutableContextSet, Set<SubjectReference>> byContext = this.parents.computeIfAbsent(subject, s -> new HashMap<>());
+        Set<SubjectReference> previous = byContext.put(contexts, parents);
+
+        for (SubjectReference parent : parents) {
+            dependents.computeIfAbsent(parent, p -> ConcurrentHashMap.newKeySet()).add(subject);
+        }
+
+        if (previous != null) {
+            for (SubjectReference parent : previous) {
+                if (!isParent(byContext.values(), parent)) {
+                    removeDependent(parent, subject);
+                }
+            }
+        }
+    }
+
+    /**
+     * Forgets the parents of a subject which has been unloaded.
+     *
+     * <p>The subjects which depend on it are kept, as they still need to be invalidated if it is
+     * loaded again and changed.</p>
+     *
+     * @param subject the subject
+     */
+    public synchronized void removeSubject(SubjectReference subject) {
+        Map<ImmutableContextSet, Set<SubjectReference>> byContext = parents.remove(subject);
+        if (byContext == null) {
+            return;
+        }
+
+        for (Set<SubjectReference> set : byContext.values()) {
+            for (SubjectReference parent : set) {
+                removeDependent(parent, subject);
+            }
+        }
+    }
+
+    private static boolean isParent(Collection<Set<SubjectReference>> parents, SubjectReference parent) {
+        for (Set<SubjectReference> set : parents) {
+            if (set.contains(parent)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void removeDependent(SubjectReference parent, SubjectReference subject) {
+        Set<SubjectReference> set = dependents.get(parent);
+        if (set != null) {
+            set.remove(subject);
+            if (set.isEmpty()) {
+                dependents.remove(parent);
+            }
+        }
+    }
+
+    /**
+     * Gets the given subject, and every subject which transitively inherits from it.
+     *
+     * @param subject the subject which changed
+     * @return the affected subjects
+     */
+    public Set<SubjectReference> getAffected(SubjectReference subject) {
+        Set<SubjectReference> affected = new HashSet<>();
+        Deque<SubjectReference> toProcess = new ArrayDeque<>();
+        toProcess.add(subject);
+
+        while (!toProcess.isEmpty()) {
+            SubjectReference s = toProcess.poll();
+            if (!affected.add(s)) {
+                continue;
+            }
+
+            Set<SubjectReference> children = dependents.get(s);
+            if (children != null) {
+                toProcess.addAll(children);
+            }
+        }
+
+        return affected;
+    }
+
+    public int size() {
+        return dependents.size();
+    }
+}
@@ -103,7 +103,7 @@ public class CalculatedSubjectData implements LPSubjectData {
             permissions.put(e.getKey(), new ConcurrentHashMap<>(e.getValue()));
         }
         permissionCache.invalidateAll();
-        service.invalidatePermissionCaches();
+        service.invalidatePermissionCaches(parentSubject.toReference());
     }
 
     public void replaceParents(Map<ImmutableContextSet, List<SubjectReference>> map) {
@@ -113,7 +113,7 @@ public class CalculatedSubjectData implements LPSubjectData {
             set.addAll(e.getValue());
             parents.put(e.getKey(), set);
         }
-        service.invalidateParentCaches();
+        service.invalidateParentCaches(parentSubject.toReference());
     }
 
     public void replaceOptions(Map<ImmutableContextSet, Map<String, String>> map) {
@@ -121,7 +121,7 @@ public class CalculatedSubjectData implements LPSubjectData {
         for (Map.Entry<ImmutableContextSet, Map<String, String>> e : map.entrySet()) {
             options.put(e.getKey(), new ConcurrentHashMap<>(e.getValue()));
         }
-        service.invalidateOptionCaches();
+        service.invalidateOptionCaches(parentSubject.toReference());
     }
 
     @Override
@@ -150,7 +150,7 @@ public class CalculatedSubjectData implements LPSubjectData {
         }
         if (b) {
             permissionCache.invalidateAll();
-            service.invalidatePermissionCaches();
+            service.invalidatePermissionCaches(parentSubject.toReference());
         }
         return b;
     }
@@ -162,7 +162,7 @@ public class CalculatedSubjectData implements LPSubjectData {
         } else {
             permissions.clear();
             permissionCache.invalidateAll();
-            service.invalidatePermissionCaches();
+            service.invalidatePermissionCaches(parentSubject.toReference());
             return true;
         }
     }
@@ -177,7 +177,7 @@ public class CalculatedSubjectData implements LPSubjectData {
         permissions.remove(contexts);
         if (!perms.isEmpty()) {
             permissionCache.invalidateAll();
-            service.invalidatePermissionCaches();
+            service.invalidatePermissionCaches(parentSubject.toReference());
             return true;
         }
         return false;
@@ -210,7 +210,7 @@ public class CalculatedSubjectData implements LPSubjectData {
         Set<SubjectReference> set = parents.computeIfAbsent(contexts.makeImmutable(), c -> ConcurrentHashMap.newKeySet());
         boolean b = set.add(parent);
         if (b) {
-            service.invalidateParentCaches();
+            service.invalidateParentCaches(parentSubject.toReference());
         }
         return b;
     }
@@ -220,7 +220,7 @@ public class CalculatedSubjectData implements LPSubjectData {
         Set<SubjectReference> set = parents.get(contexts);
         boolean b = set != null && set.remove(parent);
         if (b) {
-            service.invalidateParentCaches();
+            service.invalidateParentCaches(parentSubject.toReference());
         }
         return b;
     }
@@ -231,7 +231,7 @@ public class CalculatedSubjectData implements LPSubjectData {
             return false;
         } else {
             parents.clear();
-            service.invalidateOptionCaches();
+            service.invalidateParentCaches(parentSubject.toReference());
             return true;
         }
     }
@@ -244,7 +244,7 @@ public class CalculatedSubjectData implements LPSubjectData {
         }
 
         parents.remove(contexts);
-        service.invalidateParentCaches();
+        service.invalidateParentCaches(parentSubject.toReference());
         return !set.isEmpty();
     }
 
@@ -267,7 +267,7 @@ public class CalculatedSubjectData implements LPSubjectData {
         Map<String, String> options = this.options.computeIfAbsent(contexts.makeImmutable(), c -> new ConcurrentHashMap<>());
         boolean b = !stringEquals(options.put(key.toLowerCase(), value), value);
         if (b) {
-            service.invalidateOptionCaches();
+            service.invalidateOptionCaches(parentSubject.toReference());
         }
         return b;
     }
@@ -277,7 +277,7 @@ public class CalculatedSubjectData implements LPSubjectData {
         Map<String, String> options = this.options.get(contexts);
         boolean b = options != null && options.remove(key.toLowerCase()) != null;
         if (b) {
-            service.invalidateOptionCaches();
+            service.invalidateOptionCaches(parentSubject.toReference());
         }
         return b;
     }
@@ -288,7 +288,7 @@ public class CalculatedSubjectData implements LPSubjectData {
             return false;
         } else {
             options.clear();
-            service.invalidateOptionCaches();
+            service.invalidateOptionCaches(parentSubject.toReference());
             return true;
         }
     }
@@ -301,7 +301,7 @@ public class CalculatedSubjectData implements LPSubjectData {
         }
 
         options.remove(contexts);
-        service.invalidateOptionCaches();
+        service.invalidateOptionCaches(parentSubject.toReference());
         return !map.isEmpty();
     }
 
@@ -0,0 +1,69 @@
+/*
+ * Copyright (c) 2016 Lucko (Luck) <luck@lucko.me>
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.luckperms.sponge.service.calculated;
+
+import lombok.experimental.UtilityClass;
+
+import com.google.common.collect.ImmutableSet;
+
+import me.lucko.luckperms.api.context.ContextSet;
+import me.lucko.luckperms.sponge.service.LuckPermsService;
+import me.lucko.luckperms.sponge.service.proxy.LPSubject;
+import me.lucko.luckperms.sponge.service.references.SubjectReference;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+@UtilityClass
+public class SubjectInheritance {
+
+    /**
+     * Flattens the fallback chain of a subject into the order its lookups would visit each subject.
+     *
+     * <p>Walking the returned subjects in order and checking only their own data gives the same result
+     * as recursively looking up through each parent. A subject reached more than once is only included
+     * at its first position, as its whole chain will already have been checked there.</p>
+     *
+     * @param subject the subject to resolve for
+     * @param contexts the contexts of the lookup
+     * @return the flattened chain, not including the subject itself
+     */
+    public static Set<SubjectReference> flatten(LPSubject subject, ContextSet contexts) {
+        SubjectReference self = subject.toReference();
+
+        Set<SubjectReference> order = new LinkedHashSet<>();
+        order.add(self);
+        visit(subject.getService(), subject, contexts, order);
+        order.remove(self);
+
+        return ImmutableSet.copyOf(order);
+    }
+
+    private static void visit(LuckPermsService service, LPSubject subject, ContextSet contexts, Set<SubjectReference> order) {
+        for (SubjectReference ref : subject.getFallbackOrder(contexts)) {
+            if (order.add(ref)) {
+                visit(service, ref.resolve(service), contexts, order);
+            }
+        }
+    }
+}
@@ -29,6 +29,7 @@ import lombok.RequiredArgsConstructor;
 
 import com.github.benmanes.caffeine.cache.Caffeine;
 import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.github.benmanes.caffeine.cache.RemovalCause;
 import com.google.common.collect.ImmutableMap;
 
 import me.lucko.luckperms.api.Tristate;
@@ -55,6 +56,11 @@ public class PersistedCollection implements LPSubjectCollection {
 
     @Getter(AccessLevel.NONE)
     private final LoadingCache<String, PersistedSubject> subjects = Caffeine.newBuilder()
+            .removalListener((String id, PersistedSubject subject, RemovalCause cause) -> {
+                if (subject != null) {
+                    getService().getDependencyGraph().removeSubject(subject.toReference());
+                }
+            })
             .build(s -> new PersistedSubject(s, getService(), PersistedCollection.this));
 
     public void loadAll() {
@@ -27,16 +27,17 @@ import lombok.NonNull;
 
 import com.github.benmanes.caffeine.cache.Caffeine;
 import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 
 import me.lucko.luckperms.api.Tristate;
 import me.lucko.luckperms.api.context.ContextSet;
 import me.lucko.luckperms.api.context.ImmutableContextSet;
-import me.lucko.luckperms.common.utils.BufferedRequest;
 import me.lucko.luckperms.sponge.service.LuckPermsService;
 import me.lucko.luckperms.sponge.service.calculated.CalculatedSubjectData;
 import me.lucko.luckperms.sponge.service.calculated.OptionLookup;
 import me.lucko.luckperms.sponge.service.calculated.PermissionLookup;
+import me.lucko.luckperms.sponge.service.calculated.SubjectInheritance;
 import me.lucko.luckperms.sponge.service.proxy.LPSubject;
 import me.lucko.luckperms.sponge.service.references.SubjectCollectionReference;
 import me.lucko.luckperms.sponge.service.references.SubjectReference;
@@ -47,8 +48,8 @@ import org.spongepowered.api.command.CommandSource;
 
 import co.aikar.timings.Timing;
 
-import java.io.IOException;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
@@ -74,24 +75,14 @@ public class PersistedSubject implements LPSubject {
             .expireAfterAccess(20, TimeUnit.MINUTES)
             .build(this::lookupParents);
 
+    private final LoadingCache<ImmutableContextSet, Set<SubjectReference>> inheritanceCache = Caffeine.newBuilder()
+            .expireAfterAccess(20, TimeUnit.MINUTES)
+            .build(contexts -> SubjectInheritance.flatten(this, contexts));
+
     private final LoadingCache<OptionLookup, Optional<String>> optionLookupCache = Caffeine.newBuilder()
             .expireAfterAccess(20, TimeUnit.MINUTES)
             .build(lookup -> lookupOptionValue(lookup.getContexts(), lookup.getKey()));
 
-    private final BufferedRequest<Void> saveBuffer = new BufferedRequest<Void>(1000L, r -> PersistedSubject.this.service.getPlugin().doAsync(r)) {
-        @Override
-        protected Void perform() {
-            service.getPlugin().doAsync(() -> {
-                try {
-                    service.getStorage().saveToFile(PersistedSubject.this);
-                } catch (IOException e) {
-                    e.printStackTrace();
-                }
-            });
-            return null;
-        }
-    };
-
     public PersistedSubject(String identifier, LuckPermsService service, PersistedCollection containingCollection) {
         this.identifier = identifier;
         this.service = service;
@@ -104,6 +95,7 @@ public class PersistedSubject implements LPSubject {
         service.getLocalDataCaches().add(transientSubjectData);
         service.getLocalPermissionCaches().add(permissionLookupCache);
         service.getLocalParentCaches().add(parentLookupCache);
+        service.getLocalParentCaches().add(inheritanceCache);
         service.getLocalOptionCaches().add(optionLookupCache);
     }
 
@@ -113,9 +105,23 @@ public class PersistedSubject implements LPSubject {
         this.transientSubjectData.cleanup();
         this.permissionLookupCache.cleanUp();
         this.parentLookupCache.cleanUp();
+        this.inheritanceCache.cleanUp();
         this.optionLookupCache.cleanUp();
     }
 
+    public void invalidatePermissionLookups() {
+        permissionLookupCache.invalidateAll();
+    }
+
+    public void invalidateParentLookups() {
+        parentLookupCache.invalidateAll();
+        inheritanceCache.invalidateAll();
+    }
+
+    public void invalidateOptionLookups() {
+        optionLookupCache.invalidateAll();
+    }
+
     public void loadData(SubjectStorageModel dataHolder) {
         subjectData.setSave(false);
         dataHolder.applyToData(subjectData);
@@ -123,7 +129,7 @@ public class PersistedSubject implements LPSubject {
     }
 
     public void save() {
-        saveBuffer.request();
+        service.getStorage().scheduleSave(this);
     }
 
     @Override
@@ -131,49 +137,20 @@ public class PersistedSubject implements LPSubject {
         return Optional.empty();
     }
 
-    private Tristate lookupPermissionValue(ContextSet contexts, String node) {
-        Tristate res;
-
-        if (parentCollection.resolve(service).getTransientHasPriority()) {
-            res = transientSubjectData.getPermissionValue(contexts, node);
-            if (res != Tristate.UNDEFINED) {
-                return res;
-            }
-
-            res = subjectData.getPermissionValue(contexts, node);
-            if (res != Tristate.UNDEFINED) {
-                return res;
-            }
-        } else {
-            res = subjectData.getPermissionValue(contexts, node);
-            if (res != Tristate.UNDEFINED) {
-                return res;
-            }
-
-            res = transientSubjectData.getPermissionValue(contexts, node);
-            if (res != Tristate.UNDEFINED) {
-                return res;
-            }
+    private Tristate lookupPermissionValue(ImmutableContextSet contexts, String node) {
+        Tristate res = getOwnPermissionValue(contexts, node);
+        if (res != Tristate.UNDEFINED) {
+            return res;
         }
 
-        for (SubjectReference parent : getParents(contexts)) {
-            res = parent.resolve(service).getPermissionValue(contexts, node);
+        for (SubjectReference ref : inheritanceCache.get(contexts)) {
+            res = ref.resolve(service).getOwnPermissionValue(contexts, node);
             if (res != Tristate.UNDEFINED) {
                 return res;
             }
         }
 
-        if (getParentCollection().resolve(service).getIdentifier().equalsIgnoreCase("defaults")) {
-            return Tristate.UNDEFINED;
-        }
-
-        res = getParentCollection().resolve(service).getDefaultSubject().resolve(service).getPermissionValue(contexts, node);
-        if (res != Tristate.UNDEFINED) {
-            return res;
-        }
-
-        res = service.getDefaults().getPermissionValue(contexts, node);
-        return res;
+        return Tristate.UNDEFINED;
     }
 
     private Set<SubjectReference> lookupParents(ContextSet contexts) {
@@ -186,7 +163,9 @@ public class PersistedSubject implements LPSubject {
             s.addAll(service.getDefaults().getParents(contexts));
         }
 
-        return ImmutableSet.copyOf(s);
+        ImmutableSet<SubjectReference> parents = ImmutableSet.copyOf(s);
+        service.getDependencyGraph().recordParents(toReference(), contexts.makeImmutable(), parents);
+        return parents;
     }
 
     private Optional<String> lookupOptionValue(ContextSet contexts, String key) {
@@ -242,6 +221,40 @@ public class PersistedSubject implements LPSubject {
         }
     }
 
+    @Override
+    public Tristate getOwnPermissionValue(ContextSet contexts, String node) {
+        Tristate res;
+
+        if (parentCollection.resolve(service).getTransientHasPriority()) {
+            res = transientSubjectData.getPermissionValue(contexts, node);
+            if (res != Tristate.UNDEFINED) {
+                return res;
+            }
+
+            return subjectData.getPermissionValue(contexts, node);
+        } else {
+            res = subjectData.getPermissionValue(contexts, node);
+            if (res != Tristate.UNDEFINED) {
+                return res;
+            }
+
+            return transientSubjectData.getPermissionValue(contexts, node);
+        }
+    }
+
+    @Override
+    public List<SubjectReference> getFallbackOrder(ContextSet contexts) {
+        ImmutableList.Builder<SubjectReference> order = ImmutableList.builder();
+        order.addAll(getParents(contexts));
+
+        if (!getParentCollection().resolve(service).getIdentifier().equalsIgnoreCase("defaults")) {
+            order.add(getParentCollection().resolve(service).getDefaultSubject());
+            order.add(service.getDefaults().toReference());
+        }
+
+        return order.build();
+    }
+
     @Override
     public boolean isChildOf(@NonNull ContextSet contexts, @NonNull SubjectReference subject) {
         try (Timing ignored = service.getPlugin().getTimings().time(LPTiming.INTERNAL_SUBJECT_IS_CHILD_OF)) {
@@ -24,6 +24,8 @@ package me.lucko.luckperms.sponge.service.proxy;
 
 import lombok.NonNull;
 
+import com.google.common.collect.ImmutableList;
+
 import me.lucko.luckperms.api.context.ContextSet;
 import me.lucko.luckperms.common.utils.ImmutableCollectors;
 import me.lucko.luckperms.sponge.service.LuckPermsService;
@@ -76,6 +78,29 @@ public interface LPSubject extends Subject {
 
     me.lucko.luckperms.api.Tristate getPermissionValue(ContextSet contexts, String permission);
 
+    /**
+     * Gets the permission value set on this subject itself, without falling back to its parents or defaults.
+     *
+     * <p>Subjects which can't separate the two just return their full value.</p>
+     *
+     * @param contexts the contexts to check in
+     * @param permission the permission
+     * @return the value
+     */
+    default me.lucko.luckperms.api.Tristate getOwnPermissionValue(ContextSet contexts, String permission) {
+        return getPermissionValue(contexts, permission);
+    }
+
+    /**
+     * Gets the subjects this subject falls back to when it has no value of its own, in the order they are checked.
+     *
+     * @param contexts the contexts to check in
+     * @return the fallback subjects
+     */
+    default List<SubjectReference> getFallbackOrder(ContextSet contexts) {
+        return ImmutableList.of();
+    }
+
     boolean isChildOf(ContextSet contexts, SubjectReference parent);
 
     Set<SubjectReference> getParents(ContextSet contexts);
@@ -40,9 +40,10 @@ public final class SubjectCollectionReference {
     @Getter
     private final String collection;
 
-    private WeakReference<LPSubjectCollection> ref = null;
+    private volatile WeakReference<LPSubjectCollection> ref = null;
 
-    public synchronized LPSubjectCollection resolve(LuckPermsService service) {
+    public LPSubjectCollection resolve(LuckPermsService service) {
+        WeakReference<LPSubjectCollection> ref = this.ref;
         if (ref != null) {
             LPSubjectCollection sc = ref.get();
             if (sc != null) {
@@ -51,7 +52,7 @@ public final class SubjectCollectionReference {
         }
 
         LPSubjectCollection sc = service.getSubjects(collection);
-        ref = new WeakReference<>(sc);
+        this.ref = new WeakReference<>(sc);
         return sc;
     }
 }
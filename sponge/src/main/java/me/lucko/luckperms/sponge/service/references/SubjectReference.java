@@ -56,9 +56,11 @@ public final class SubjectReference {
     @Getter
     private final String identifier;
 
-    private WeakReference<LPSubject> ref = null;
+    // not synchronized - racing resolves just look up the same subject twice
+    private volatile WeakReference<LPSubject> ref = null;
 
-    public synchronized LPSubject resolve(LuckPermsService service) {
+    public LPSubject resolve(LuckPermsService service) {
+        WeakReference<LPSubject> ref = this.ref;
         if (ref != null) {
             LPSubject s = ref.get();
             if (s != null) {
@@ -67,7 +69,7 @@ public final class SubjectReference {
         }
 
         LPSubject s = service.getSubjects(collection).get(identifier);
-        ref = new WeakReference<>(s);
+        this.ref = new WeakReference<>(s);
         return s;
     }
 
@@ -37,11 +37,20 @@ import java.io.BufferedWriter;
 import java.io.File;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
 import java.util.Collections;
-import java.util.HashMap;
+import java.util.Iterator;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.stream.Collectors;
 
 /**
@@ -49,14 +58,30 @@ import java.util.stream.Collectors;
  */
 public class SubjectStorage {
 
+    /**
+     * How long to wait after a subject is first marked as dirty before writing.
+     * Any further changes made within this window are written in the same pass.
+     */
+    private static final long WRITE_DELAY_MILLIS = 1000L;
+
     @Getter
     private final Gson gson;
 
     private final File container;
 
+    // all file writes happen on this single thread
+    private final ScheduledExecutorService writer;
+    private final Set<PersistedSubject> dirtySubjects = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean(false);
+
     public SubjectStorage(File container) {
-        this.gson = new GsonBuilder().setPrettyPrinting().create();
+        this.gson = new GsonBuilder().create();
         this.container = container;
+        this.writer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "luckperms-sponge-storage");
+            thread.setDaemon(true);
+            return thread;
+        });
         checkContainer();
     }
 
@@ -85,6 +110,69 @@ public class SubjectStorage {
         return new File(collection, subjectName + ".json");
     }
 
+    /**
+     * Marks a subject as needing to be saved. Subjects are written in batches by the storage thread.
+     *
+     * @param subject the subject to save
+     */
+    public void scheduleSave(PersistedSubject subject) {
+        dirtySubjects.add(subject);
+
+        if (flushScheduled.compareAndSet(false, true)) {
+            try {
+                writer.schedule(this::flush, WRITE_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                // shutting down - the final flush will pick this subject up
+                flushScheduled.set(false);
+            }
+        }
+    }
+
+    private void flush() {
+        // reset before draining, so subjects changed during the flush get another pass
+        flushScheduled.set(false);
+
+        Iterator<PersistedSubject> it = dirtySubjects.iterator();
+        while (it.hasNext()) {
+            PersistedSubject subject = it.next();
+            it.remove();
+
+            try {
+                saveToFile(subject);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Stops the storage thread, writing any subjects which are still pending.
+     *
+     * @return true if the storage thread finished writing in time
+     */
+    public boolean shutdown() {
+        // the final flush runs on the storage thread, so it never races a flush which is already in progress
+        writer.execute(this::flush);
+        writer.shutdown();
+
+        boolean terminated;
+        try {
+            terminated = writer.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            terminated = false;
+        }
+
+        if (!terminated) {
+            // still writing - leave the remaining subjects to the storage thread
+            return false;
+        }
+
+        // pick up anything which was marked as dirty after the final flush was queued
+        flush();
+        return true;
+    }
+
     public void saveToFile(PersistedSubject subject) throws IOException {
         File subjectFile = resolveFile(subject.getContainingCollection().getIdentifier(), subject.getIdentifier());
         saveToFile(new SubjectStorageModel(subject.getSubjectData()), subjectFile);
@@ -92,15 +180,19 @@ public class SubjectStorage {
 
     public void saveToFile(SubjectStorageModel model, File file) throws IOException {
         file.getParentFile().mkdirs();
-        if (file.exists()) {
-            file.delete();
-        }
-        file.createNewFile();
 
-        try (BufferedWriter writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+        // write to a temporary file first, so a crash mid-write never leaves a truncated subject behind
+        File tmp = new File(file.getParentFile(), file.getName() + ".tmp");
+        try (BufferedWriter writer = Files.newBufferedWriter(tmp.toPath(), StandardCharsets.UTF_8)) {
             gson.toJson(model.toJson(), writer);
             writer.flush();
         }
+
+        try {
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
     }
 
     public Map<String, SubjectStorageModel> loadAllFromFile(String collectionName) {
@@ -113,8 +205,9 @@ public class SubjectStorage {
         String[] fileNames = collection.list((dir, name) -> name.endsWith(".json"));
         if (fileNames == null) return Collections.emptyMap();
 
-        Map<String, SubjectStorageModel> holders = new HashMap<>();
-        for (String name : fileNames) {
+        // reading & parsing is independent per file, so spread it over the common pool
+        Map<String, SubjectStorageModel> holders = new ConcurrentHashMap<>();
+        Arrays.stream(fileNames).parallel().forEach(name -> {
             File subject = new File(collection, name);
 
             try {
@@ -125,7 +218,7 @@ public class SubjectStorage {
             } catch (IOException e) {
                 e.printStackTrace();
             }
-        }
+        });
 
         return holders;
     }